@@ -0,0 +1,337 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hongyue.app.media.player.Player;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * A synchronized (thread-safe) implementation of the {@link PlayerNodePool}.
+ * Used as a {@link PlayerNodePool} wrapper, to make every individual pool operation atomic,
+ * with a separate lock per wrapped pool.
+ * <br>
+ * The {@link Player} calls made by the wrapped pool are deferred (see {@link PlayerCallQueue})
+ * until the lock is released, so the Players are never stopped or released under the lock.
+ */
+final class ConcurrentPlayerNodePool implements PlayerNodePool {
+
+
+    private final Object mLock;
+
+    private final PlayerNodePool mPlayerNodePool;
+
+
+
+
+    ConcurrentPlayerNodePool(@NonNull PlayerNodePool playerNodePool) {
+        mLock = new Object();
+        mPlayerNodePool = Preconditions.checkNonNull(playerNodePool);
+    }
+
+
+
+
+    @Override
+    public final void add(@NonNull PlayerNode playerNode) {
+        synchronized(mLock) {
+            mPlayerNodePool.add(playerNode);
+        }
+    }
+
+
+
+
+    @Override
+    public final void add(@NonNull String key, @NonNull Player player) {
+        synchronized(mLock) {
+            mPlayerNodePool.add(key, player);
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode remove(@NonNull PlayerNode playerNode) {
+        synchronized(mLock) {
+            return mPlayerNodePool.remove(playerNode);
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode remove(@NonNull String key) {
+        synchronized(mLock) {
+            return mPlayerNodePool.remove(key);
+        }
+    }
+
+
+
+
+    @Override
+    public final void unregister(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                mPlayerNodePool.unregister(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Override
+    public final void park(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                mPlayerNodePool.park(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode unpark(@NonNull String key) {
+        synchronized(mLock) {
+            return mPlayerNodePool.unpark(key);
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode acquire(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                return mPlayerNodePool.acquire(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode acquireFree(@NonNull String key) {
+        synchronized(mLock) {
+            return mPlayerNodePool.acquireFree(key);
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode acquireOldest(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                return mPlayerNodePool.acquireOldest(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode acquireOldestIdle(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                return mPlayerNodePool.acquireOldestIdle(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Override
+    public final void release(@NonNull PlayerNode playerNode) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                mPlayerNodePool.release(playerNode);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Override
+    public final void release(@NonNull String key) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                mPlayerNodePool.release(key);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Override
+    public final void release() {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                mPlayerNodePool.release();
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode get(@NonNull String key) {
+        synchronized(mLock) {
+            return mPlayerNodePool.get(key);
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode getFree() {
+        synchronized(mLock) {
+            return mPlayerNodePool.getFree();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode getOldest() {
+        synchronized(mLock) {
+            return mPlayerNodePool.getOldest();
+        }
+    }
+
+
+
+
+    @Override
+    public final int trim(int playerCount) {
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mLock) {
+                return mPlayerNodePool.trim(playerCount);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode peekOldestIdle() {
+        synchronized(mLock) {
+            return mPlayerNodePool.peekOldestIdle();
+        }
+    }
+
+
+
+
+    @Override
+    public final int getPlayerCount() {
+        synchronized(mLock) {
+            return mPlayerNodePool.getPlayerCount();
+        }
+    }
+
+
+
+
+    @Override
+    public final boolean isFull() {
+        synchronized(mLock) {
+            return mPlayerNodePool.isFull();
+        }
+    }
+
+
+
+
+    @Override
+    public final boolean contains(@NonNull String key) {
+        synchronized(mLock) {
+            return mPlayerNodePool.contains(key);
+        }
+    }
+
+
+
+
+}
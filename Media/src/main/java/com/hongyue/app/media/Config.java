@@ -19,16 +19,20 @@ package com.hongyue.app.media;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.hongyue.app.media.player.cache.CacheEvictionPolicy;
+import com.hongyue.app.media.player.loadcontrol.LoadControlProfile;
 import com.hongyue.app.media.player.util.BaseMeter;
 import com.hongyue.app.media.player.util.MediaSourceBuilder;
+import com.hongyue.app.media.player.util.PersistentBandwidthMeter;
+import com.hongyue.app.media.util.misc.ExoPlayerUtils;
+import com.hongyue.app.media.util.misc.Preconditions;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Arrays;
 
@@ -40,13 +44,74 @@ import static com.hongyue.app.media.util.misc.Preconditions.checkNonNull;
 public final class Config implements Serializable {
 
 
+    public static final int DEFAULT_MAX_PARKED_PLAYER_COUNT = 1;
+
     @DefaultRenderersFactory.ExtensionRendererMode public final int extensionMode;
 
+    /**
+     * The maximum number of the {@link com.hongyue.app.media.player.Player}s the corresponding Player Pool
+     * is allowed to hold. (<strong>0</strong> stands for the device-specific default budget)
+     */
+    public final int maxPlayerCount;
+
+    /**
+     * The maximum number of the "Parked" {@link com.hongyue.app.media.player.Player}s (the paused and detached ones
+     * that still hold the loaded media) the corresponding Player Pool is allowed to keep.
+     */
+    public final int maxParkedPlayerCount;
+
+    /**
+     * The bandwidth meter. (Defaults to the process-wide {@link PersistentBandwidthMeter#getDefaultMeter()},
+     * which seeds the initial estimate with the persisted one)
+     */
     @NonNull
     public final BaseMeter<?, ?> meter;
-    @NonNull public final LoadControl loadControl;
+
+    /**
+     * The explicit {@link LoadControl} shared by all the Players of the corresponding Player Pool.
+     * (If not set, each Player gets its own {@link com.hongyue.app.media.player.loadcontrol.ProfiledLoadControl}
+     * of the {@link #activeLoadControlProfile} and {@link #preloadLoadControlProfile})
+     */
+    @Nullable public final LoadControl loadControl;
+
+    /**
+     * The buffering profile of the Players which are being played.
+     */
+    @NonNull public final LoadControlProfile activeLoadControlProfile;
+
+    /**
+     * The buffering profile of the Players which are merely being preloaded.
+     */
+    @NonNull public final LoadControlProfile preloadLoadControlProfile;
+
     @NonNull public final MediaSourceBuilder mediaSourceBuilder;
 
+    /**
+     * Determines whether the process-wide shared {@link Cache} (see {@link ExoPlayerUtils#getCacheAsync(android.content.Context, Config)})
+     * is to be used in case the explicit {@link #cache} is not set.
+     */
+    public final boolean useDefaultCache;
+
+    /**
+     * The eviction policy of the process-wide shared {@link Cache}.
+     */
+    @NonNull public final CacheEvictionPolicy cacheEvictionPolicy;
+
+    /**
+     * The size (in bytes) of the process-wide shared {@link Cache}.
+     * (Defaults to the {@link ExoPlayerUtils#DEFAULT_CACHE_SIZE})
+     */
+    public final long cacheSize;
+
+    /**
+     * The directory of the process-wide shared {@link Cache}. (If not set, the directory is derived from the
+     * default one, see {@link ExoPlayerUtils#getCacheDirectory(android.content.Context, long, CacheEvictionPolicy)})
+     * <br>
+     * The shared caches are keyed by their directories, so the explicitly set directory must not be
+     * used by the configs of the different {@link #cacheSize} or {@link #cacheEvictionPolicy}.
+     */
+    @Nullable public final File cacheDirectory;
+
     @Nullable public final Cache cache;
     @Nullable public final DataSource.Factory dataSourceFactory;
 
@@ -55,9 +120,17 @@ public final class Config implements Serializable {
 
     private Config(Builder builder) {
         this.extensionMode = builder.extensionMode;
+        this.maxPlayerCount = builder.maxPlayerCount;
+        this.maxParkedPlayerCount = builder.maxParkedPlayerCount;
         this.meter = builder.meter;
         this.loadControl = builder.loadControl;
+        this.activeLoadControlProfile = builder.activeLoadControlProfile;
+        this.preloadLoadControlProfile = builder.preloadLoadControlProfile;
         this.mediaSourceBuilder = builder.mediaSourceBuilder;
+        this.useDefaultCache = builder.useDefaultCache;
+        this.cacheEvictionPolicy = builder.cacheEvictionPolicy;
+        this.cacheSize = builder.cacheSize;
+        this.cacheDirectory = builder.cacheDirectory;
         this.cache = builder.cache;
         this.dataSourceFactory = builder.dataSourceFactory;
     }
@@ -75,6 +148,16 @@ public final class Config implements Serializable {
 
 
 
+    /**
+     * Determines if the explicit directory of the shared {@link Cache} is set.
+     */
+    public final boolean hasCacheDirectory() {
+        return (this.cacheDirectory != null);
+    }
+
+
+
+
     /**
      * Determines if the {@link DataSource.Factory} is set.
      */
@@ -85,15 +168,43 @@ public final class Config implements Serializable {
 
 
 
+    /**
+     * Determines if the explicit {@link LoadControl} is set.
+     */
+    public final boolean hasLoadControl() {
+        return (this.loadControl != null);
+    }
+
+
+
+
+    /**
+     * Determines if the explicit Player Pool budget is set.
+     */
+    public final boolean hasMaxPlayerCount() {
+        return (this.maxPlayerCount > 0);
+    }
+
+
+
+
 
     @Override
     public final int hashCode() {
         final int prime = 31;
         int result = 17;
         result = ((prime * result) + this.extensionMode);
+        result = ((prime * result) + this.maxPlayerCount);
+        result = ((prime * result) + this.maxParkedPlayerCount);
         result = ((prime * result) + this.meter.hashCode());
-        result = ((prime * result) + this.loadControl.hashCode());
+        result = ((prime * result) + (hasLoadControl() ? this.loadControl.hashCode() : 0));
+        result = ((prime * result) + this.activeLoadControlProfile.hashCode());
+        result = ((prime * result) + this.preloadLoadControlProfile.hashCode());
         result = ((prime * result) + this.mediaSourceBuilder.hashCode());
+        result = ((prime * result) + (this.useDefaultCache ? 1 : 0));
+        result = ((prime * result) + this.cacheEvictionPolicy.hashCode());
+        result = ((prime * result) + (int) (this.cacheSize ^ (this.cacheSize >>> 32)));
+        result = ((prime * result) + (hasCacheDirectory() ? this.cacheDirectory.hashCode() : 0));
         result = ((prime * result) + (hasCache() ? this.cache.hashCode() : 0));
         result = ((prime * result) + (hasDataSourceFactory() ? this.dataSourceFactory.hashCode() : 0));
 
@@ -113,23 +224,39 @@ public final class Config implements Serializable {
 
     public static final class Builder {
 
-        private final DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
-
         private int extensionMode;
+        private int maxPlayerCount;
+        private int maxParkedPlayerCount;
 
         private BaseMeter<?, ?> meter;
         private LoadControl loadControl;
+        private LoadControlProfile activeLoadControlProfile;
+        private LoadControlProfile preloadLoadControlProfile;
         private MediaSourceBuilder mediaSourceBuilder;
 
+        private boolean useDefaultCache;
+
+        private CacheEvictionPolicy cacheEvictionPolicy;
+        private long cacheSize;
+        private File cacheDirectory;
+
         private Cache cache;
         private DataSource.Factory dataSourceFactory;
 
 
         public Builder() {
             this.extensionMode = EXTENSION_RENDERER_MODE_OFF;
-            this.meter = new BaseMeter<>(bandwidthMeter, bandwidthMeter);
-            this.loadControl = new DefaultLoadControl();
+            this.maxPlayerCount = 0;
+            this.maxParkedPlayerCount = DEFAULT_MAX_PARKED_PLAYER_COUNT;
+            this.meter = PersistentBandwidthMeter.getDefaultMeter();
+            this.loadControl = null;
+            this.activeLoadControlProfile = LoadControlProfile.FAST_START_FEED;
+            this.preloadLoadControlProfile = LoadControlProfile.PRELOAD;
             this.mediaSourceBuilder = MediaSourceBuilder.DEFAULT;
+            this.useDefaultCache = true;
+            this.cacheEvictionPolicy = CacheEvictionPolicy.LRU;
+            this.cacheSize = ExoPlayerUtils.DEFAULT_CACHE_SIZE;
+            this.cacheDirectory = null;
             this.cache = null;
             this.dataSourceFactory = null;
         }
@@ -141,14 +268,42 @@ public final class Config implements Serializable {
         }
 
 
+        public Builder maxPlayerCount(int maxPlayerCount) {
+            Preconditions.isTrue("The Max Player Count cannot be negative.", (maxPlayerCount >= 0));
+
+            this.maxPlayerCount = maxPlayerCount;
+            return this;
+        }
+
+
+        public Builder maxParkedPlayerCount(int maxParkedPlayerCount) {
+            Preconditions.isTrue("The Max Parked Player Count cannot be negative.", (maxParkedPlayerCount >= 0));
+
+            this.maxParkedPlayerCount = maxParkedPlayerCount;
+            return this;
+        }
+
+
         public Builder meter(@NonNull BaseMeter<?, ?> meter) {
             this.meter = checkNonNull(meter);
             return this;
         }
 
 
-        public Builder loadControl(@NonNull LoadControl loadControl) {
-            this.loadControl = checkNonNull(loadControl);
+        public Builder loadControl(@Nullable LoadControl loadControl) {
+            this.loadControl = loadControl;
+            return this;
+        }
+
+
+        public Builder activeLoadControlProfile(@NonNull LoadControlProfile activeLoadControlProfile) {
+            this.activeLoadControlProfile = checkNonNull(activeLoadControlProfile);
+            return this;
+        }
+
+
+        public Builder preloadLoadControlProfile(@NonNull LoadControlProfile preloadLoadControlProfile) {
+            this.preloadLoadControlProfile = checkNonNull(preloadLoadControlProfile);
             return this;
         }
 
@@ -165,6 +320,32 @@ public final class Config implements Serializable {
 
 
 
+        public Builder useDefaultCache(boolean useDefaultCache) {
+            this.useDefaultCache = useDefaultCache;
+            return this;
+        }
+
+
+        public Builder cacheEvictionPolicy(@NonNull CacheEvictionPolicy cacheEvictionPolicy) {
+            this.cacheEvictionPolicy = checkNonNull(cacheEvictionPolicy);
+            return this;
+        }
+
+
+        public Builder cacheSize(long cacheSize) {
+            Preconditions.isTrue("The Cache Size must be positive.", (cacheSize > 0));
+
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+
+        public Builder cacheDirectory(@Nullable File cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+            return this;
+        }
+
+
         public Builder cache(@Nullable Cache cache) {
             this.cache = cache;
             return this;
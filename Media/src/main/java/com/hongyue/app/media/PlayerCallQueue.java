@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media;
+
+import androidx.annotation.NonNull;
+
+import com.hongyue.app.media.player.Player;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+
+/**
+ * A per-thread queue of the {@link Player} calls made by the {@link PlayerNodePool}s.
+ * <br>
+ * The calls posted from within the locked sections (wrapped into the {@link #enter()} and {@link #leave()} pairs)
+ * are deferred until the outermost section of the calling thread is left, so that the Players (which are to be used
+ * on the main thread, and some calls of which may block, e.g. the release) are never called while holding the pool locks.
+ * The calls posted outside of the locked sections are made right away.
+ */
+final class PlayerCallQueue {
+
+
+    private static final ThreadLocal<PlayerCallQueue> sQueue = new ThreadLocal<PlayerCallQueue>() {
+
+        @Override
+        protected PlayerCallQueue initialValue() {
+            return new PlayerCallQueue();
+        }
+
+    };
+
+    private final Queue<Runnable> calls;
+
+    private int depth;
+
+
+
+
+    private PlayerCallQueue() {
+        this.calls = new ArrayDeque<>();
+        this.depth = 0;
+    }
+
+
+
+
+    /**
+     * Marks the beginning of the locked section of the calling thread.
+     */
+    static void enter() {
+        sQueue.get().depth++;
+    }
+
+
+
+
+    /**
+     * Marks the end of the locked section of the calling thread, making all the deferred
+     * {@link Player} calls (in the order of posting) if it's the outermost section.
+     */
+    static void leave() {
+        final PlayerCallQueue queue = sQueue.get();
+
+        if(--queue.depth > 0) {
+            return;
+        }
+
+        Runnable call;
+
+        while((call = queue.calls.poll()) != null) {
+            call.run();
+        }
+    }
+
+
+
+
+    /**
+     * Posts the {@link Player} call, which gets deferred if the calling thread is within the locked section.
+     *
+     * @param call the call to be made
+     */
+    static void post(@NonNull Runnable call) {
+        Preconditions.nonNull(call);
+
+        final PlayerCallQueue queue = sQueue.get();
+
+        if(queue.depth > 0) {
+            queue.calls.add(call);
+        } else {
+            call.run();
+        }
+    }
+
+
+
+
+}
@@ -21,6 +21,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import android.text.TextUtils;
 
+import com.google.android.exoplayer2.source.MediaSource;
 import com.hongyue.app.media.player.Player;
 import com.hongyue.app.media.util.misc.Preconditions;
 
@@ -35,6 +36,11 @@ public final class PlayerNode implements Comparable<PlayerNode> {
     private String key;
     private Player player;
 
+    private boolean isParked;
+
+    private String mediaSourceKey;
+    private MediaSource mediaSource;
+
 
 
 
@@ -72,6 +78,10 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
     @NonNull
     public final PlayerNode setPlayer(@Nullable Player player) {
+        if(this.player != player) {
+            removeMediaSource();
+        }
+
         this.player = player;
         return this;
     }
@@ -96,7 +106,13 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
     @NonNull
     public final PlayerNode setKey(@NonNull String key) {
-        this.key = Preconditions.checkNonNull(key);
+        Preconditions.nonNull(key);
+
+        if(!this.key.equals(key)) {
+            removeMediaSource();
+        }
+
+        this.key = key;
         return this;
     }
 
@@ -105,6 +121,8 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
     @NonNull
     public final PlayerNode removeKey() {
+        removeMediaSource();
+
         this.key = "";
         return this;
     }
@@ -127,6 +145,63 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
 
 
+    /**
+     * Marks the node as "Parked", that is the held {@link Player} is paused and detached from
+     * its view, but still holds the loaded media for the key the node is bound to.
+     */
+    @NonNull
+    public final PlayerNode setParked(boolean isParked) {
+        this.isParked = isParked;
+        return this;
+    }
+
+
+
+
+    public final boolean isParked() {
+        return this.isParked;
+    }
+
+
+
+
+    /**
+     * Associates the {@link MediaSource} created for the key the node is bound to with the held {@link Player},
+     * so that the Player can be resumed with the very same (already prepared) source.
+     * (The source is dropped as soon as the node gets bound to a different key or loses its Player,
+     * as a single source must never be prepared by different players)
+     *
+     * @param mediaSourceKey the key describing the source (e.g. its uri)
+     * @param mediaSource the media source
+     */
+    @NonNull
+    public final synchronized PlayerNode setMediaSource(@NonNull String mediaSourceKey, @NonNull MediaSource mediaSource) {
+        this.mediaSourceKey = Preconditions.checkNonNull(mediaSourceKey);
+        this.mediaSource = Preconditions.checkNonNull(mediaSource);
+        return this;
+    }
+
+
+
+
+    @Nullable
+    public final synchronized MediaSource getMediaSource(@NonNull String mediaSourceKey) {
+        return (mediaSourceKey.equals(this.mediaSourceKey) ? this.mediaSource : null);
+    }
+
+
+
+
+    @NonNull
+    public final synchronized PlayerNode removeMediaSource() {
+        this.mediaSourceKey = null;
+        this.mediaSource = null;
+        return this;
+    }
+
+
+
+
     @Override
     public final int compareTo(@NonNull PlayerNode otherNode) {
         if(this.lastAccessTime > otherNode.lastAccessTime) {
@@ -141,9 +216,13 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
 
 
+    /**
+     * Player Nodes are identity-based, as the held {@link Player} can be
+     * swapped or cleared while the node still resides within the pool.
+     */
     @Override
     public final int hashCode() {
-        return ((this.player != null) ? this.player.hashCode() : super.hashCode());
+        return System.identityHashCode(this);
     }
 
 
@@ -151,7 +230,7 @@ public final class PlayerNode implements Comparable<PlayerNode> {
 
     @Override
     public final boolean equals(Object obj) {
-        return ((obj instanceof PlayerProviderImpl) && (hashCode() == obj.hashCode()));
+        return (this == obj);
     }
 
 
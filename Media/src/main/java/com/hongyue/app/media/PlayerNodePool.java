@@ -66,6 +66,26 @@ interface PlayerNodePool {
      */
     void unregister(@NonNull String key);
 
+    /**
+     * Parks the {@link PlayerNode} mapped to the specified key, that is pauses its {@link Player}
+     * and detaches it from the view, while keeping both the key binding and the loaded media intact.
+     * If the number of the parked player nodes exceeds the limit imposed by the current pool,
+     * the least recently parked player node gets unregistered (stopped and made available).
+     *
+     * @param key the key to park the player node for
+     */
+    void park(@NonNull String key);
+
+    /**
+     * Unparks the {@link PlayerNode} mapped to the specified key (if it's parked),
+     * thus making it a regular registered player node again.
+     *
+     * @param key the key to unpark the player node for
+     * @return the unparked player node, or <strong>null</strong> if there was no Player Node for the specified key
+     */
+    @Nullable
+    PlayerNode unpark(@NonNull String key);
+
     /**
      * Registers (acquires) the available {@link PlayerNode} for the specified key.
      *
@@ -94,6 +114,16 @@ interface PlayerNodePool {
     @Nullable
     PlayerNode acquireOldest(@NonNull String key);
 
+    /**
+     * Registers (acquires) the oldest idle {@link PlayerNode} (see {@link #peekOldestIdle()}) for the specified key.
+     * Unlike the {@link #acquireOldest(String)}, never takes over the {@link Player} that's in use.
+     *
+     * @param key the key to register the player node for
+     * @return the registered player node, or <strong>null</strong> if there are no idle player nodes
+     */
+    @Nullable
+    PlayerNode acquireOldestIdle(@NonNull String key);
+
     /**
      * Releases the specified {@link PlayerNode}.
      *
@@ -138,6 +168,24 @@ interface PlayerNodePool {
     @Nullable
     PlayerNode getOldest();
 
+    /**
+     * Releases the oldest idle (detached) {@link PlayerNode}s until the number of the held player nodes
+     * drops to the specified count, or until there are no idle player nodes left.
+     *
+     * @param playerCount the number of the player nodes to trim the pool down to
+     * @return the number of the released player nodes
+     */
+    int trim(int playerCount);
+
+    /**
+     * Retrieves the oldest idle {@link PlayerNode} (the one whose {@link Player} is not in use,
+     * that is either a free or a parked one) in the current pool without updating its access time.
+     *
+     * @return the oldest idle player node, or <strong>null</strong> if there are no idle player nodes
+     */
+    @Nullable
+    PlayerNode peekOldestIdle();
+
     /**
      * Retrieves the number of the {@link PlayerNode}s held by the current pool.
      *
@@ -22,9 +22,10 @@ import androidx.annotation.Nullable;
 import com.hongyue.app.media.player.Player;
 import com.hongyue.app.media.util.misc.Preconditions;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,23 +35,42 @@ import static com.hongyue.app.media.util.misc.CollectionUtils.toHashSet;
 /**
  * An concrete implementation of the {@link PlayerNodePool}, used to
  * manage the {@link PlayerNode}s and corresponding {@link Player}s.
+ * <br>
+ * All the held {@link PlayerNode}s are indexed by an access-ordered LRU map, while
+ * the free (unbound) ones are additionally tracked by a dedicated free node queue,
+ * which makes both the free and the oldest node lookups constant time operations.
+ * <br>
+ * The pool grows on demand up to its max size, and can be shrunk via {@link #trim(int)}.
+ * <br>
+ * The calls of the held {@link Player}s are posted to the {@link PlayerCallQueue}, so that they
+ * are not made while the pool is locked.
+ * <br>
+ * The parked nodes (see {@link #park(String)}) are tracked in the order of parking, and only the
+ * limited number of them is kept "hot"; the least recently parked ones get stopped on eviction.
  */
 final class PlayerNodePoolImpl implements PlayerNodePool {
 
 
     private final int maxSize;
+    private final int maxParkedCount;
 
-    private final Set<PlayerNode> playerNodeSet;
+    private final Map<PlayerNode, PlayerNode> lruPlayerNodeMap;
+    private final Set<PlayerNode> freePlayerNodeSet;
+    private final Set<PlayerNode> parkedPlayerNodeSet;
     private final Map<String, PlayerNode> keyPlayerNodeMap;
 
 
 
 
-    PlayerNodePoolImpl(int maxSize) {
+    PlayerNodePoolImpl(int maxSize, int maxParkedCount) {
         Preconditions.isTrue("You must specify a valid Pool Max Size.", (maxSize >= 0));
+        Preconditions.isTrue("You must specify a valid Max Parked Count.", (maxParkedCount >= 0));
 
         this.maxSize = maxSize;
-        this.playerNodeSet = new HashSet<>();
+        this.maxParkedCount = maxParkedCount;
+        this.lruPlayerNodeMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.freePlayerNodeSet = new LinkedHashSet<>();
+        this.parkedPlayerNodeSet = new LinkedHashSet<>();
         this.keyPlayerNodeMap = new HashMap<>();
     }
 
@@ -61,8 +81,14 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
     public final void add(@NonNull PlayerNode playerNode) {
         Preconditions.nonNull(playerNode);
 
-        this.playerNodeSet.add(playerNode);
-        this.keyPlayerNodeMap.put(playerNode.getKey(), playerNode);
+        this.lruPlayerNodeMap.put(playerNode, playerNode);
+
+        if(playerNode.isKeySet()) {
+            this.freePlayerNodeSet.remove(playerNode);
+            this.keyPlayerNodeMap.put(playerNode.getKey(), playerNode);
+        } else {
+            this.freePlayerNodeSet.add(playerNode);
+        }
     }
 
 
@@ -82,7 +108,12 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
     @Override
     public final PlayerNode remove(@NonNull PlayerNode playerNode) {
         Preconditions.nonNull(playerNode);
-        return remove(playerNode.getKey());
+
+        if(playerNode.isKeySet()) {
+            return remove(playerNode.getKey());
+        }
+
+        return (removeNode(playerNode) ? playerNode : null);
     }
 
 
@@ -95,8 +126,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
         final PlayerNode playerNode = this.keyPlayerNodeMap.remove(key);
 
         if(playerNode != null) {
-            this.playerNodeSet.remove(playerNode);
-            playerNode.removeKey();
+            removeNode(playerNode);
         }
 
         return playerNode;
@@ -109,7 +139,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
     public final void unregister(@NonNull String key) {
         Preconditions.nonEmpty(key);
 
-        final PlayerNode playerNode = get(key);
+        final PlayerNode playerNode = this.keyPlayerNodeMap.get(key);
 
         if(playerNode != null) {
             unbind(playerNode, false);
@@ -121,6 +151,63 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
 
 
+    @Override
+    public final void park(@NonNull String key) {
+        Preconditions.nonEmpty(key);
+
+        final PlayerNode playerNode = this.keyPlayerNodeMap.get(key);
+
+        if((playerNode == null) || !playerNode.hasPlayer()) {
+            return;
+        }
+
+        // pausing, demoting (to the preload buffering budget) and detaching the Player,
+        // while keeping the prepared media intact
+        final Player player = playerNode.getPlayer();
+
+        PlayerCallQueue.post(() -> {
+            player.pause();
+            player.setBufferingActive(false);
+            player.postDetachedEvent();
+            player.setAttachmentStateDelegate(null);
+            player.removeAllEventListeners();
+        });
+
+        // moving the node to the tail of the parked nodes
+        this.parkedPlayerNodeSet.remove(playerNode);
+        this.parkedPlayerNodeSet.add(playerNode.setParked(true));
+
+        // stopping the least recently parked nodes that exceed the limit
+        PlayerNode evictedPlayerNode;
+
+        while(this.parkedPlayerNodeSet.size() > this.maxParkedCount) {
+            evictedPlayerNode = this.parkedPlayerNodeSet.iterator().next();
+
+            // evicting the very node (its key might have been re-bound to another node in the meantime)
+            this.parkedPlayerNodeSet.remove(evictedPlayerNode);
+            unbind(evictedPlayerNode, false);
+        }
+    }
+
+
+
+
+    @Override
+    public final PlayerNode unpark(@NonNull String key) {
+        Preconditions.nonEmpty(key);
+
+        final PlayerNode playerNode = this.keyPlayerNodeMap.get(key);
+
+        if((playerNode != null) && playerNode.isParked()) {
+            this.parkedPlayerNodeSet.remove(playerNode.setParked(false));
+        }
+
+        return playerNode;
+    }
+
+
+
+
     @Nullable
     @Override
     public final PlayerNode acquire(@NonNull String key) {
@@ -146,8 +233,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
         final PlayerNode freePlayerNode = getFree();
 
         if(freePlayerNode != null) {
-            freePlayerNode.setKey(key);
-            this.keyPlayerNodeMap.put(key, freePlayerNode);
+            bind(freePlayerNode, key);
         }
 
         return freePlayerNode;
@@ -164,8 +250,25 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
         if(playerNode != null) {
             unbind(playerNode, false);
-            playerNode.setKey(key);
-            this.keyPlayerNodeMap.put(key, playerNode);
+            bind(playerNode, key);
+        }
+
+        return playerNode;
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final PlayerNode acquireOldestIdle(@NonNull String key) {
+        Preconditions.nonEmpty(key);
+
+        final PlayerNode playerNode = peekOldestIdle();
+
+        if(playerNode != null) {
+            unbind(updateAccessTime(playerNode), false);
+            bind(playerNode, key);
         }
 
         return playerNode;
@@ -181,8 +284,10 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
         unbind(playerNode, true);
 
         if(playerNode.hasPlayer()) {
-            playerNode.getPlayer().release();
+            final Player player = playerNode.getPlayer();
             playerNode.setPlayer(null);
+
+            PlayerCallQueue.post(player::release);
         }
     }
 
@@ -205,7 +310,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
     @Override
     public final void release() {
-        for(PlayerNode playerNode : toHashSet(this.playerNodeSet)) {
+        for(PlayerNode playerNode : toHashSet(this.lruPlayerNodeMap.keySet())) {
             release(playerNode);
         }
     }
@@ -213,6 +318,30 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
 
 
+    @Override
+    public final int trim(int playerCount) {
+        Preconditions.isTrue("The Player Count cannot be negative.", (playerCount >= 0));
+
+        int releasedCount = 0;
+
+        // iterating from the least recently used nodes to the most recently used ones
+        for(PlayerNode playerNode : new ArrayList<>(this.lruPlayerNodeMap.keySet())) {
+            if(getPlayerCount() <= playerCount) {
+                break;
+            }
+
+            if(!playerNode.hasPlayer() || !playerNode.getPlayer().isAttached()) {
+                release(playerNode);
+                releasedCount++;
+            }
+        }
+
+        return releasedCount;
+    }
+
+
+
+
     @Override
     public final PlayerNode get(@NonNull String key) {
         Preconditions.nonEmpty(key);
@@ -220,7 +349,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
         final PlayerNode playerNode = this.keyPlayerNodeMap.get(key);
 
         if(playerNode != null) {
-            updateKey(playerNode, key);
+            updateAccessTime(playerNode);
         }
 
         return playerNode;
@@ -231,16 +360,11 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
     @Override
     public final PlayerNode getFree() {
-        for(PlayerNode playerNode : this.playerNodeSet) {
-            if(playerNode.hasPlayer()
-                && !playerNode.getPlayer().isAttached()
-                && !playerNode.isKeySet()
-                && !this.keyPlayerNodeMap.containsKey(playerNode.getKey())) {
-                return updateAccessTime(playerNode);
-            }
+        if(this.freePlayerNodeSet.isEmpty()) {
+            return null;
         }
 
-        return null;
+        return updateAccessTime(this.freePlayerNodeSet.iterator().next());
     }
 
 
@@ -248,8 +372,22 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
     @Override
     public final PlayerNode getOldest() {
-        final PlayerNode playerNode = Collections.min(this.playerNodeSet);
-        return ((playerNode != null) ? updateAccessTime(playerNode) : null);
+        return (!this.lruPlayerNodeMap.isEmpty() ? updateAccessTime(this.lruPlayerNodeMap.keySet().iterator().next()) : null);
+    }
+
+
+
+
+    @Override
+    public final PlayerNode peekOldestIdle() {
+        // iterating from the least recently used nodes to the most recently used ones
+        for(PlayerNode playerNode : this.lruPlayerNodeMap.keySet()) {
+            if(isIdle(playerNode)) {
+                return playerNode;
+            }
+        }
+
+        return null;
     }
 
 
@@ -257,7 +395,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
     @Override
     public final int getPlayerCount() {
-        return this.playerNodeSet.size();
+        return this.lruPlayerNodeMap.size();
     }
 
 
@@ -265,7 +403,7 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
     @Override
     public final boolean isFull() {
-        return (getPlayerCount() == this.maxSize);
+        return (getPlayerCount() >= this.maxSize);
     }
 
 
@@ -279,36 +417,71 @@ final class PlayerNodePoolImpl implements PlayerNodePool {
 
 
 
+    private void bind(PlayerNode playerNode, String key) {
+        this.freePlayerNodeSet.remove(playerNode);
+        this.keyPlayerNodeMap.put(key, playerNode.setKey(key));
+    }
+
+
+
+
     private void unbind(PlayerNode playerNode, boolean removeFromPool) {
         final Player player = playerNode.getPlayer();
 
+        this.parkedPlayerNodeSet.remove(playerNode.setParked(false));
+
         if(player != null) {
-            player.stop(false);
-            player.postDetachedEvent();
-            player.setAttachmentStateDelegate(null);
-            player.removeAllEventListeners();
+            PlayerCallQueue.post(() -> {
+                player.stop(false);
+                player.postDetachedEvent();
+                player.setAttachmentStateDelegate(null);
+                player.removeAllEventListeners();
+            });
         }
 
-        if(playerNode.isKeySet() && removeFromPool) {
-            remove(playerNode.getKey());
-        } else {
-            playerNode.removeKey();
+        if(removeFromPool) {
+            remove(playerNode);
+            return;
+        }
+
+        if(playerNode.isKeySet() && (this.keyPlayerNodeMap.get(playerNode.getKey()) == playerNode)) {
+            this.keyPlayerNodeMap.remove(playerNode.getKey());
+        }
+
+        playerNode.removeKey();
+
+        if(playerNode.hasPlayer() && this.lruPlayerNodeMap.containsKey(playerNode)) {
+            this.freePlayerNodeSet.add(playerNode);
         }
     }
 
 
 
 
-    private PlayerNode updateAccessTime(PlayerNode playerNode) {
-        return playerNode.setLastAccessTime(System.currentTimeMillis());
+    private boolean isIdle(PlayerNode playerNode) {
+        // the parked nodes still hold the loaded media, yet their Players are not in use
+        return (this.freePlayerNodeSet.contains(playerNode) || playerNode.isParked());
     }
 
 
 
 
-    private PlayerNode updateKey(PlayerNode playerNode, String key) {
+    private boolean removeNode(PlayerNode playerNode) {
+        this.freePlayerNodeSet.remove(playerNode);
+        this.parkedPlayerNodeSet.remove(playerNode.setParked(false));
+        playerNode.removeKey();
+
+        return (this.lruPlayerNodeMap.remove(playerNode) != null);
+    }
+
+
+
+
+    private PlayerNode updateAccessTime(PlayerNode playerNode) {
         playerNode.setLastAccessTime(System.currentTimeMillis());
-        playerNode.setKey(key);
+
+        // moving the node to the tail of the access-ordered map
+        this.lruPlayerNodeMap.get(playerNode);
 
         return playerNode;
     }
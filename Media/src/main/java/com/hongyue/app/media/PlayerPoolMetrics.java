@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hongyue.app.media.model.PlayerPoolStats;
+import com.hongyue.app.media.model.PlayerPoolStats.AcquisitionType;
+import com.hongyue.app.media.util.metrics.LatencyHistogram;
+
+/**
+ * Collects the {@link com.hongyue.app.media.player.Player} acquisition statistics of the {@link PlayerProvider} pools.
+ */
+final class PlayerPoolMetrics {
+
+
+    private final LatencyHistogram[] mLatencyHistograms;
+
+    private volatile PlayerProvider.PoolStatsListener mListener;
+
+
+
+
+    PlayerPoolMetrics() {
+        final AcquisitionType[] acquisitionTypes = AcquisitionType.values();
+
+        mLatencyHistograms = new LatencyHistogram[acquisitionTypes.length];
+
+        for(int i = 0; i < acquisitionTypes.length; i++) {
+            mLatencyHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+
+
+
+    final void record(@NonNull AcquisitionType acquisitionType, long latencyInNanos) {
+        mLatencyHistograms[acquisitionType.ordinal()].record(latencyInNanos);
+
+        final PlayerProvider.PoolStatsListener listener = mListener;
+
+        if(listener != null) {
+            listener.onPlayerAcquired(acquisitionType, latencyInNanos);
+        }
+    }
+
+
+
+
+    final void reset() {
+        for(LatencyHistogram latencyHistogram : mLatencyHistograms) {
+            latencyHistogram.reset();
+        }
+    }
+
+
+
+
+    final void setListener(@Nullable PlayerProvider.PoolStatsListener listener) {
+        mListener = listener;
+    }
+
+
+
+
+    @NonNull
+    final PlayerPoolStats snapshot() {
+        final LatencyHistogram.Snapshot[] latencySnapshots = new LatencyHistogram.Snapshot[mLatencyHistograms.length];
+
+        for(int i = 0; i < mLatencyHistograms.length; i++) {
+            latencySnapshots[i] = mLatencyHistograms[i].snapshot();
+        }
+
+        return new PlayerPoolStats(latencySnapshots);
+    }
+
+
+
+
+}
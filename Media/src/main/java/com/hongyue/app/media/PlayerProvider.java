@@ -22,8 +22,12 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.android.exoplayer2.source.MediaSource;
+import com.hongyue.app.media.model.PlaybackStats;
+import com.hongyue.app.media.model.PlayerPoolStats;
 import com.hongyue.app.media.player.Player;
 
+import java.util.concurrent.Future;
+
 
 /**
  * Defines a base contract for the concrete {@link PlayerProvider} implementations.
@@ -75,6 +79,71 @@ public interface PlayerProvider {
     @NonNull
     MediaSource createMediaSource(@NonNull Config config, @NonNull Uri uri, boolean isLooping);
 
+    /**
+     * Retrieves the cached or creates a brand-new {@link MediaSource} for the specified key and {@link Uri}.
+     * (See {@link #getOrCreateMediaSource(Config, String, Uri, boolean)})
+     * Uses the default {@link Player} {@link Config}.
+     *
+     * @param key the key to cache the media source for
+     * @param uri the uri to create the media source for
+     * @param isLooping whether to loop the video
+     * @return the cached or created media source
+     */
+    @NonNull
+    MediaSource getOrCreateMediaSource(@NonNull String key, @NonNull Uri uri, boolean isLooping);
+
+    /**
+     * Retrieves the cached or creates a brand-new {@link MediaSource} for the specified key, {@link Uri} and Player {@link Config}.
+     * The created {@link MediaSource} is held along with the {@link Player} currently bound to the key, so that
+     * the Player which gets resumed with the very same {@link MediaSource} can continue the playback without being re-prepared.
+     * (The source is dropped once the Player gets bound to another key or released, so that a single
+     * {@link MediaSource} instance never gets prepared by different players; if there's no Player bound to the key,
+     * a brand-new source is created every time)
+     *
+     * @param config the player configuration
+     * @param key the key to cache the media source for
+     * @param uri the uri to create the media source for
+     * @param isLooping whether to loop the video
+     * @return the cached or created media source
+     */
+    @NonNull
+    MediaSource getOrCreateMediaSource(@NonNull Config config,
+                                       @NonNull String key,
+                                       @NonNull Uri uri,
+                                       boolean isLooping);
+
+    /**
+     * Asynchronously creates the {@link MediaSource} for the specified {@link Uri}.
+     * (See {@link #createMediaSourceAsync(Config, Uri, boolean, MediaSourceCallback)})
+     * Uses the default {@link Player} {@link Config}.
+     *
+     * @param uri the uri to create the media source for
+     * @param isLooping whether to loop the video
+     * @param callback the callback to deliver the result to (on the main thread)
+     * @return the future holding the created media source
+     */
+    @NonNull
+    Future<MediaSource> createMediaSourceAsync(@NonNull Uri uri, boolean isLooping, @Nullable MediaSourceCallback callback);
+
+    /**
+     * Asynchronously creates the {@link MediaSource} for the specified {@link Uri} and Player {@link Config}.
+     * The {@link MediaSource} is built on a background thread, so that the uri parsing, content type
+     * inference and data source factory creation do not take place on the main thread.
+     * The result is delivered to the specified {@link MediaSourceCallback} on the main thread,
+     * unless the returned {@link Future} gets cancelled first.
+     *
+     * @param config the player configuration
+     * @param uri the uri to create the media source for
+     * @param isLooping whether to loop the video
+     * @param callback the callback to deliver the result to (on the main thread)
+     * @return the future holding the created media source
+     */
+    @NonNull
+    Future<MediaSource> createMediaSourceAsync(@NonNull Config config,
+                                               @NonNull Uri uri,
+                                               boolean isLooping,
+                                               @Nullable MediaSourceCallback callback);
+
     /**
      * Retrieves the library name.
      *
@@ -131,6 +200,124 @@ public interface PlayerProvider {
     @NonNull
     Player getOrInitPlayer(@NonNull Config config, @NonNull String key);
 
+    /**
+     * Retrieves an existing or initializes a new {@link Player} instance for the specified key,
+     * but only if it can be done without the eviction of any other Player.
+     * Uses the default Player {@link Config}.
+     * (See {@link #tryInitPlayer(Config, String)})
+     *
+     * @param key the key to retrieve the player for
+     * @return the retrieved or created Player, or null if no Player can be spared
+     */
+    @Nullable
+    Player tryInitPlayer(@NonNull String key);
+
+    /**
+     * Retrieves an existing or initializes a new {@link Player} instance for the specified key and Player {@link Config},
+     * but only if it can be done without the eviction of any other Player (that is by reusing a free Player or
+     * creating a new one within both the pool-specific and the process-wide budgets).
+     * (Intended for the preloading of the Players ahead of their actual use)
+     *
+     * @param config the player configuration
+     * @param key the key to retrieve the player for
+     * @return the retrieved or created Player, or null if no Player can be spared
+     */
+    @Nullable
+    Player tryInitPlayer(@NonNull Config config, @NonNull String key);
+
+    /**
+     * Pre-creates and initializes the specified number of {@link Player}s, and parks them as
+     * "free" Players within the Player Pool, so that the subsequent {@link #getOrInitPlayer(String)}
+     * calls can reuse them instead of constructing the brand-new ones.
+     * Uses the default Player {@link Config}.
+     *
+     * @param count the number of players to prewarm
+     */
+    void prewarm(int count);
+
+    /**
+     * Pre-creates and initializes the specified number of {@link Player}s for the specified Player {@link Config},
+     * and parks them as "free" Players within the corresponding Player Pool.
+     * (The creation is performed as idle work on the main thread, one Player per idle pass,
+     * and stops early once the corresponding Player Pool gets full)
+     * <br>
+     * The media cache of the specified {@link Config} gets initialized in the background as well
+     * (even if the count is zero), so it's advised to prewarm with the very {@link Config}
+     * (i.e. the one specifying the desired cache eviction policy) used for the playback.
+     *
+     * @param config the player configuration
+     * @param count the number of players to prewarm
+     */
+    void prewarm(@NonNull Config config, int count);
+
+    /**
+     * Sets the process-wide {@link Player} budget shared by all the Player Pools (regardless of their {@link Config}s).
+     * Once the budget is exhausted, the least recently used idle {@link Player} gets evicted from whichever
+     * Player Pool holds it. The Players in use are never evicted, so if all of them are in use, the budget gets exceeded.
+     *
+     * @param maxPlayerCount the maximum number of players, or <strong>0</strong> for the device-specific default budget
+     */
+    void setMaxPlayerCount(int maxPlayerCount);
+
+    /**
+     * Retrieves the process-wide {@link Player} budget shared by all the Player Pools.
+     *
+     * @return the maximum number of players
+     */
+    int getMaxPlayerCount();
+
+    /**
+     * Retrieves the total number of the {@link Player}s held by all the Player Pools.
+     *
+     * @return the total number of players
+     */
+    int getPlayerCount();
+
+    /**
+     * Retrieves the snapshot of the {@link Player} acquisition statistics
+     * (the pool hits, reuses, evictions and creations along with their latencies)
+     * accumulated by all the Player Pools since the last reset.
+     *
+     * @return the statistics snapshot
+     */
+    @NonNull
+    PlayerPoolStats getPoolStats();
+
+    /**
+     * Resets the accumulated {@link Player} acquisition statistics.
+     */
+    void resetPoolStats();
+
+    /**
+     * Sets the listener to be notified of every {@link Player} acquisition.
+     * The listener is invoked synchronously on the acquiring thread (outside of the pool lock), so it must be lightweight.
+     *
+     * @param listener the listener, or null to remove the current one
+     */
+    void setPoolStatsListener(@Nullable PoolStatsListener listener);
+
+    /**
+     * Retrieves the snapshot of the playback statistics (the time-to-first-frame, the buffering stalls
+     * and the seek latencies) accumulated by all the {@link Player}s since the last reset.
+     *
+     * @return the statistics snapshot
+     */
+    @NonNull
+    PlaybackStats getPlaybackStats();
+
+    /**
+     * Resets the accumulated playback statistics.
+     */
+    void resetPlaybackStats();
+
+    /**
+     * Sets the listener to be notified of every measured playback event.
+     * The listener is invoked synchronously on the application's main thread, so it must be lightweight.
+     *
+     * @param listener the listener, or null to remove the current one
+     */
+    void setPlaybackStatsListener(@Nullable PlaybackStatsListener listener);
+
     /**
      * Checks if there's a {@link Player} available for the specified key.
      * Uses the default Player {@link Config}.
@@ -165,6 +352,25 @@ public interface PlayerProvider {
      */
     void unregister(@NonNull Config config, @NonNull String key);
 
+    /**
+     * Parks the {@link Player}, that is pauses it and detaches it from the view, while keeping it registered
+     * for the specified key along with the already loaded media. (A limited number of the recently parked Players
+     * is kept per Player Pool; the older ones get unregistered on eviction)
+     * Uses the default Player {@link Config}.
+     *
+     * @param key the key to park the Player for
+     */
+    void park(@NonNull String key);
+
+    /**
+     * Parks the {@link Player}, that is pauses it and detaches it from the view, while keeping it registered
+     * for the specified key along with the already loaded media. (See {@link Config#maxParkedPlayerCount})
+     *
+     * @param config the player configuration
+     * @param key the key to park the Player for
+     */
+    void park(@NonNull Config config, @NonNull String key);
+
     /**
      * Releases the {@link Player} for the specified key.
      * Uses the default Player {@link Config}.
@@ -193,4 +399,56 @@ public interface PlayerProvider {
      */
     void release();
 
+    /**
+     * A callback used to deliver the results of the asynchronous {@link MediaSource} creation.
+     */
+    interface MediaSourceCallback {
+
+        /**
+         * Gets called when the {@link MediaSource} has been successfully created.
+         *
+         * @param mediaSource the created media source
+         */
+        void onMediaSourceCreated(@NonNull MediaSource mediaSource);
+
+        /**
+         * Gets called when the creation of the {@link MediaSource} has failed.
+         *
+         * @param error the encountered error
+         */
+        void onMediaSourceCreationFailed(@NonNull Throwable error);
+
+    }
+
+    /**
+     * A listener used to observe the {@link Player} acquisitions.
+     */
+    interface PoolStatsListener {
+
+        /**
+         * Gets called when the {@link Player} has been acquired from the pool.
+         *
+         * @param acquisitionType the way the player has been acquired
+         * @param latencyInNanos the acquisition latency (in nanoseconds)
+         */
+        void onPlayerAcquired(@NonNull PlayerPoolStats.AcquisitionType acquisitionType, long latencyInNanos);
+
+    }
+
+    /**
+     * A listener used to observe the measured playback events.
+     */
+    interface PlaybackStatsListener {
+
+        /**
+         * Gets called when the playback event has been measured.
+         *
+         * @param key the key of the Playable the event belongs to (if known)
+         * @param eventType the type of the event
+         * @param durationInNanos the duration of the event (in nanoseconds)
+         */
+        void onPlaybackEvent(@Nullable String key, @NonNull PlaybackStats.EventType eventType, long durationInNanos);
+
+    }
+
 }
@@ -16,39 +16,71 @@
 
 package com.hongyue.app.media;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.util.Pair;
 
 import com.google.android.exoplayer2.source.LoopingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
+import com.hongyue.app.media.model.PlaybackStats;
+import com.hongyue.app.media.model.PlayerPoolStats;
+import com.hongyue.app.media.model.PlayerPoolStats.AcquisitionType;
 import com.hongyue.app.media.player.Player;
 import com.hongyue.app.media.player.creators.DefaultPlayerCreator;
 import com.hongyue.app.media.player.creators.PlayerCreator;
+import com.hongyue.app.media.player.util.PersistentBandwidthMeter;
+import com.hongyue.app.media.util.metrics.PlaybackMetrics;
+import com.hongyue.app.media.util.misc.ExecutorUtils;
+import com.hongyue.app.media.util.misc.ExoPlayerUtils;
 import com.hongyue.app.media.util.misc.Preconditions;
 
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static com.google.android.exoplayer2.util.Util.getUserAgent;
 
 /**
  * The main {@link PlayerProvider} responsible for the management of all the {@link Player}s
  * in the context of the application.
+ * <br>
+ * The Player bookkeeping is thread-safe: the Config/Creator/Pool mappings are held by the concurrent maps,
+ * every Player Pool synchronizes its own operations, and the compound (multi-step or multi-pool) acquisitions
+ * are performed atomically under a dedicated pool lock. (The {@link Player}s themselves are still to be
+ * driven from the main thread)
  */
 public final class PlayerProviderImpl implements PlayerProvider {
 
 
-    private static final int MAX_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_DEFAULT_POOL_SIZE = 2;
+    private static final int MAX_DEFAULT_POOL_SIZE = 4;
+
+    /**
+     * The amount of the application heap budget (in megabytes) per a single pooled {@link Player}.
+     * Used to derive the default Player Pool size from the device memory class.
+     */
+    private static final int POOL_SIZE_MEMORY_UNIT_MB = 64;
 
     public static final Config DEFAULT_CONFIG = new Config.Builder().build();
     private static final String LIBRARY_NAME = "ExoPlayer";
 
+    private static final int MEDIA_SOURCE_THREAD_COUNT = 2;
+
     @SuppressWarnings("StaticFieldLeak")
     private volatile static PlayerProvider sInstance;
 
@@ -56,8 +88,20 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
     private final Context mContext;
 
-    private final Map<Config, PlayerCreator> mConfigCreatorMap;
-    private final Map<PlayerCreator, PlayerNodePool> mCreatorNodePoolMap;
+    private final Handler mMainHandler;
+
+    private final ExecutorService mMediaSourceExecutor;
+
+    private final int mDefaultPoolSize;
+
+    private volatile int mMaxPlayerCount;
+
+    private final Object mPoolLock;
+
+    private final PlayerPoolMetrics mPoolMetrics;
+
+    private final ConcurrentMap<Config, PlayerCreator> mConfigCreatorMap;
+    private final ConcurrentMap<PlayerCreator, PlayerNodePool> mCreatorNodePoolMap;
 
 
 
@@ -82,10 +126,39 @@ public final class PlayerProviderImpl implements PlayerProvider {
     private PlayerProviderImpl(Context context) {
         mLibraryName = getUserAgent(context, LIBRARY_NAME);
         mContext = context.getApplicationContext();
-        mConfigCreatorMap = new HashMap<>();
-        mCreatorNodePoolMap = new HashMap<>();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mMediaSourceExecutor = ExecutorUtils.newBackgroundExecutor("MediaSourceBuilder", MEDIA_SOURCE_THREAD_COUNT);
+        mDefaultPoolSize = calculateDefaultPoolSize(mContext);
+        mMaxPlayerCount = mDefaultPoolSize;
+        mPoolLock = new Object();
+        mPoolMetrics = new PlayerPoolMetrics();
+        mConfigCreatorMap = new ConcurrentHashMap<>();
+        mCreatorNodePoolMap = new ConcurrentHashMap<>();
 
         initCookieManager();
+
+        // seeding the default bandwidth estimate with the persisted one
+        PersistentBandwidthMeter.getInstance().init(mContext);
+
+        mContext.registerComponentCallbacks(new MemoryPressureCallbacks());
+    }
+
+
+
+
+    private static int calculateDefaultPoolSize(Context context) {
+        final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+
+        if((activityManager == null) || activityManager.isLowRamDevice()) {
+            return MIN_DEFAULT_POOL_SIZE;
+        }
+
+        final int poolSize = Math.min(
+            (activityManager.getMemoryClass() / POOL_SIZE_MEMORY_UNIT_MB),
+            Runtime.getRuntime().availableProcessors()
+        );
+
+        return Math.max(MIN_DEFAULT_POOL_SIZE, Math.min(poolSize, MAX_DEFAULT_POOL_SIZE));
     }
 
 
@@ -148,6 +221,87 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
 
 
+    @NonNull
+    @Override
+    public final MediaSource getOrCreateMediaSource(@NonNull String key, @NonNull Uri uri, boolean isLooping) {
+        return getOrCreateMediaSource(DEFAULT_CONFIG, key, uri, isLooping);
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final MediaSource getOrCreateMediaSource(@NonNull Config config,
+                                                    @NonNull String key,
+                                                    @NonNull Uri uri,
+                                                    boolean isLooping) {
+        Preconditions.nonNull(config);
+        Preconditions.nonEmpty(key);
+        Preconditions.nonNull(uri);
+
+        final String mediaSourceKey = (uri + ":" + isLooping);
+
+        synchronized(mPoolLock) {
+            final PlayerNodePool correspondingPool = getPoolForConfig(config);
+            final PlayerNode playerNode = ((correspondingPool != null) ? correspondingPool.get(key) : null);
+
+            // a media source must not be shared by different players, so the sources are only
+            // held by the node of the player currently bound to the key (if any)
+            if((playerNode == null) || !playerNode.hasPlayer()) {
+                return createMediaSource(config, uri, isLooping);
+            }
+
+            MediaSource mediaSource = playerNode.getMediaSource(mediaSourceKey);
+
+            if(mediaSource == null) {
+                mediaSource = createMediaSource(config, uri, isLooping);
+
+                playerNode.setMediaSource(mediaSourceKey, mediaSource);
+            }
+
+            return mediaSource;
+        }
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final Future<MediaSource> createMediaSourceAsync(@NonNull Uri uri,
+                                                            boolean isLooping,
+                                                            @Nullable MediaSourceCallback callback) {
+        return createMediaSourceAsync(DEFAULT_CONFIG, uri, isLooping, callback);
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final Future<MediaSource> createMediaSourceAsync(@NonNull Config config,
+                                                            @NonNull Uri uri,
+                                                            boolean isLooping,
+                                                            @Nullable MediaSourceCallback callback) {
+        Preconditions.nonNull(config);
+        Preconditions.nonNull(uri);
+
+        final MediaSourceTask mediaSourceTask = new MediaSourceTask(
+            config,
+            uri,
+            isLooping,
+            callback
+        );
+
+        mMediaSourceExecutor.execute(mediaSourceTask);
+
+        return mediaSourceTask;
+    }
+
+
+
+
     @NonNull
     @Override
     public final String getLibraryName() {
@@ -182,8 +336,9 @@ public final class PlayerProviderImpl implements PlayerProvider {
         Preconditions.nonEmpty(key);
 
         final PlayerNodePool correspondingPool = getPoolForConfig(config);
+        final PlayerNode playerNode = ((correspondingPool != null) ? correspondingPool.get(key) : null);
 
-        return (((correspondingPool != null) && correspondingPool.contains(key)) ? correspondingPool.get(key).getPlayer() : null);
+        return ((playerNode != null) ? playerNode.getPlayer() : null);
     }
 
 
@@ -204,37 +359,318 @@ public final class PlayerProviderImpl implements PlayerProvider {
         Preconditions.nonNull(config);
         Preconditions.nonEmpty(key);
 
-        final Pair<PlayerCreator, PlayerNodePool> pair = getOrInit(config);
-        final PlayerCreator playerCreator = pair.first;
-        final PlayerNodePool playerNodePool = pair.second;
-
-        PlayerNode playerNode = playerNodePool.get(key);
-
-        if(playerNode == null) {
-            // checking to see if there's a free (detached) PlayerNode to be reused
-            final PlayerNode freePlayerNode = playerNodePool.acquireFree(key);
-
-            // in case of the absence of the free (detached) PlayerNode
-            if(freePlayerNode == null) {
-                // If the pool is full, we need to pick the PlayerNode
-                // that is considered "the oldest" in terms of the last access time,
-                // otherwise we can create a brand-new instance of the PlayerNode and add it to the pool
-                if(playerNodePool.isFull()) {
-                    playerNode = playerNodePool.acquireOldest(key);
-                } else {
-                    // creating a brand-new PlayerNode instance
-                    playerNode = new PlayerNode(playerCreator.createPlayer()).setKey(key);
-
-                    // adding it to the general pool
-                    playerNodePool.add(playerNode);
+        return recordAcquisition(acquirePlayerNode(config, key, true)).getPlayer();
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final Player tryInitPlayer(@NonNull String key) {
+        return tryInitPlayer(DEFAULT_CONFIG, key);
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final Player tryInitPlayer(@NonNull Config config, @NonNull String key) {
+        Preconditions.nonNull(config);
+        Preconditions.nonEmpty(key);
+
+        final PlayerAcquisition acquisition = acquirePlayerNode(config, key, false);
+
+        return ((acquisition != null) ? recordAcquisition(acquisition).getPlayer() : null);
+    }
+
+
+
+
+    private PlayerAcquisition acquirePlayerNode(Config config, String key, boolean allowEviction) {
+        final long startTime = System.nanoTime();
+        final PlayerCreator playerCreator;
+        final PlayerAcquisition acquisition;
+
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mPoolLock) {
+                final Pair<PlayerCreator, PlayerNodePool> pair = getOrInit(config);
+                playerCreator = pair.first;
+                acquisition = acquirePooledPlayerNode(pair.second, key, allowEviction);
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+
+        if(acquisition == null) {
+            return null;
+        }
+
+        // the brand-new Player (if there's no pooled one to be reused) is constructed outside of the pool lock
+        final PlayerNode playerNode = ((acquisition.playerNode != null) ? acquisition.playerNode : addPlayerNode(config, playerCreator, key));
+        final Player player = playerNode.getPlayer();
+
+        // the underlying ExoPlayer is constructed upon the initialization, so it's a part of the acquisition
+        // (the initialization is a no-op for the already initialized Players)
+        player.init();
+
+        final long latencyInNanos = (System.nanoTime() - startTime);
+
+        // the playback statistics of the Player are attributed to the key it's been acquired for
+        player.setPlaybackKey(key);
+
+        return new PlayerAcquisition(playerNode, acquisition.acquisitionType, latencyInNanos);
+    }
+
+
+
+
+    private PlayerAcquisition acquirePooledPlayerNode(PlayerNodePool playerNodePool, String key, boolean allowEviction) {
+        final PlayerNode playerNode = playerNodePool.get(key);
+
+        if(playerNode != null) {
+            // the PlayerNode is about to be used again, so it's no longer considered "Parked"
+            playerNodePool.unpark(key);
+            return new PlayerAcquisition(playerNode, AcquisitionType.HIT);
+        }
+
+        // checking to see if there's a free (detached) PlayerNode to be reused
+        final PlayerNode freePlayerNode = playerNodePool.acquireFree(key);
+
+        if(freePlayerNode != null) {
+            return new PlayerAcquisition(freePlayerNode, AcquisitionType.FREE_REUSE);
+        }
+
+        // the eviction might hit the Player that's currently in use, so it's only performed on demand
+        if(!allowEviction && (playerNodePool.isFull() || isPlayerBudgetExhausted())) {
+            return null;
+        }
+
+        // If the pool is full, we need to pick the PlayerNode
+        // that is considered "the oldest" in terms of the last access time,
+        // otherwise we can create a brand-new instance of the PlayerNode and add it to the pool
+        if(playerNodePool.isFull()) {
+            return new PlayerAcquisition(playerNodePool.acquireOldest(key), AcquisitionType.EVICTION);
+        }
+
+        if(isPlayerBudgetExhausted()) {
+            // the process-wide budget is shared by all the pools, so the PlayerNode
+            // to be evicted is the globally least recently used idle one
+            final PlayerNodePool oldestIdleNodePool = getPoolWithOldestIdleNode();
+
+            // reusing the oldest idle PlayerNode directly if it belongs to the same pool
+            if(oldestIdleNodePool == playerNodePool) {
+                return new PlayerAcquisition(playerNodePool.acquireOldestIdle(key), AcquisitionType.EVICTION);
+            }
+
+            // otherwise, evicting it from the pool it belongs to (and creating a PlayerNode for the current pool)
+            if(oldestIdleNodePool != null) {
+                oldestIdleNodePool.release(oldestIdleNodePool.peekOldestIdle());
+                return new PlayerAcquisition(null, AcquisitionType.EVICTION);
+            }
+
+            // all the Players are in use, so the budget gets exceeded rather than taking over the Player in use
+        }
+
+        return new PlayerAcquisition(null, AcquisitionType.CREATION);
+    }
+
+
+
+
+    private PlayerNode addPlayerNode(Config config, PlayerCreator playerCreator, String key) {
+        final Player player = playerCreator.createPlayer();
+        final PlayerNode existingPlayerNode;
+
+        synchronized(mPoolLock) {
+            // the pool might have been released (or the key acquired by a concurrent caller) in the meantime
+            final PlayerNodePool playerNodePool = getOrInit(config).second;
+            existingPlayerNode = playerNodePool.get(key);
+
+            if(existingPlayerNode == null) {
+                final PlayerNode playerNode = new PlayerNode(player).setKey(key);
+                playerNodePool.add(playerNode);
+
+                return playerNode;
+            }
+        }
+
+        // the Player acquired by the concurrent caller is to be used instead
+        player.release();
+
+        return existingPlayerNode;
+    }
+
+
+
+
+    private PlayerNode recordAcquisition(PlayerAcquisition acquisition) {
+        // must be called outside of the pool lock, as the stats listener is invoked synchronously
+        mPoolMetrics.record(acquisition.acquisitionType, acquisition.latencyInNanos);
+
+        return acquisition.playerNode;
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final PlayerPoolStats getPoolStats() {
+        return mPoolMetrics.snapshot();
+    }
+
+
+
+
+    @Override
+    public final void resetPoolStats() {
+        mPoolMetrics.reset();
+    }
+
+
+
+
+    @Override
+    public final void setPoolStatsListener(@Nullable PoolStatsListener listener) {
+        mPoolMetrics.setListener(listener);
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final PlaybackStats getPlaybackStats() {
+        return PlaybackMetrics.getInstance().snapshot();
+    }
+
+
+
+
+    @Override
+    public final void resetPlaybackStats() {
+        PlaybackMetrics.getInstance().reset();
+    }
+
+
+
+
+    @Override
+    public final void setPlaybackStatsListener(@Nullable PlaybackStatsListener listener) {
+        PlaybackMetrics.getInstance().setListener(listener);
+    }
+
+
+
+
+    @Override
+    public final void prewarm(int count) {
+        prewarm(DEFAULT_CONFIG, count);
+    }
+
+
+
+
+    @Override
+    public final void prewarm(@NonNull Config config, int count) {
+        Preconditions.nonNull(config);
+        Preconditions.isTrue("The Prewarm Count cannot be negative.", (count >= 0));
+
+        // warming up the cache of the config ahead of the first playback (it gets initialized in the background,
+        // and with the eviction policy of the very config, as the first request decides the policy)
+        ExoPlayerUtils.getCacheAsync(mContext, config);
+
+        if(count == 0) {
+            return;
+        }
+
+        // the idle handlers can only be registered from within the Looper thread itself
+        mMainHandler.post(() -> Looper.myQueue().addIdleHandler(new PrewarmIdleHandler(config, count)));
+    }
+
+
+
+
+    private PlayerNodePool getPoolWithOldestIdleNode() {
+        PlayerNodePool oldestNodePool = null;
+        PlayerNode oldestNode = null;
+        PlayerNode playerNode;
+
+        for(PlayerNodePool playerNodePool : mCreatorNodePoolMap.values()) {
+            playerNode = playerNodePool.peekOldestIdle();
+
+            if((playerNode != null) && ((oldestNode == null) || (playerNode.compareTo(oldestNode) < 0))) {
+                oldestNode = playerNode;
+                oldestNodePool = playerNodePool;
+            }
+        }
+
+        return oldestNodePool;
+    }
+
+
+
+
+    private boolean isPlayerBudgetExhausted() {
+        return (getPlayerCount() >= mMaxPlayerCount);
+    }
+
+
+
+
+    @Override
+    public final void setMaxPlayerCount(int maxPlayerCount) {
+        Preconditions.isTrue("The Max Player Count cannot be negative.", (maxPlayerCount >= 0));
+
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mPoolLock) {
+                mMaxPlayerCount = ((maxPlayerCount > 0) ? maxPlayerCount : mDefaultPoolSize);
+
+                // shrinking the pools right away if the new budget is already exceeded
+                // (only the idle Players get released, so the Players in use may keep the pools above the budget for a while)
+                PlayerNodePool oldestIdleNodePool;
+
+                while(getPlayerCount() > mMaxPlayerCount) {
+                    oldestIdleNodePool = getPoolWithOldestIdleNode();
+
+                    if(oldestIdleNodePool == null) {
+                        break;
+                    }
+
+                    oldestIdleNodePool.release(oldestIdleNodePool.peekOldestIdle());
                 }
-            } else {
-                // using the available "Free" (Detached) PlayerNode
-                playerNode = freePlayerNode;
             }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    @Override
+    public final int getMaxPlayerCount() {
+        return mMaxPlayerCount;
+    }
+
+
+
+
+    @Override
+    public final int getPlayerCount() {
+        int playerCount = 0;
+
+        for(PlayerNodePool playerNodePool : mCreatorNodePoolMap.values()) {
+            playerCount += playerNodePool.getPlayerCount();
         }
 
-        return playerNode.getPlayer();
+        return playerCount;
     }
 
 
@@ -242,7 +678,7 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
     private Pair<PlayerCreator, PlayerNodePool> getOrInit(Config config) {
         final PlayerCreator creator = getOrInitCreator(config);
-        final PlayerNodePool nodePool = getOrInitNodePool(creator);
+        final PlayerNodePool nodePool = getOrInitNodePool(config, creator);
 
         return new Pair<>(creator, nodePool);
     }
@@ -254,9 +690,11 @@ public final class PlayerProviderImpl implements PlayerProvider {
         PlayerCreator creator = mConfigCreatorMap.get(config);
 
         if(creator == null) {
-            creator = new DefaultPlayerCreator(this, config);
+            final PlayerCreator newCreator = new DefaultPlayerCreator(this, config);
 
-            mConfigCreatorMap.put(config, creator);
+            // the creator registered by a concurrent caller (if any) wins
+            creator = mConfigCreatorMap.putIfAbsent(config, newCreator);
+            creator = ((creator != null) ? creator : newCreator);
         }
 
         return creator;
@@ -265,13 +703,18 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
 
 
-    private PlayerNodePool getOrInitNodePool(PlayerCreator creator) {
+    private PlayerNodePool getOrInitNodePool(Config config, PlayerCreator creator) {
         PlayerNodePool nodePool = mCreatorNodePoolMap.get(creator);
 
         if(nodePool == null) {
-            nodePool = new PlayerNodePoolImpl(MAX_POOL_SIZE);
-
-            mCreatorNodePoolMap.put(creator, nodePool);
+            final PlayerNodePool newNodePool = new ConcurrentPlayerNodePool(new PlayerNodePoolImpl(
+                (config.hasMaxPlayerCount() ? config.maxPlayerCount : mDefaultPoolSize),
+                config.maxParkedPlayerCount
+            ));
+
+            // the pool registered by a concurrent caller (if any) wins
+            nodePool = mCreatorNodePoolMap.putIfAbsent(creator, newNodePool);
+            nodePool = ((nodePool != null) ? nodePool : newNodePool);
         }
 
         return nodePool;
@@ -339,6 +782,30 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
 
 
+    @Override
+    public final void park(@NonNull String key) {
+        park(DEFAULT_CONFIG, key);
+    }
+
+
+
+
+    @Override
+    public final void park(@NonNull Config config, @NonNull String key) {
+        Preconditions.nonNull(config);
+        Preconditions.nonEmpty(key);
+
+        // parking the Player within a corresponding pool (if there's any)
+        final PlayerNodePool correspondingPool = getPoolForConfig(config);
+
+        if(correspondingPool != null) {
+            correspondingPool.park(key);
+        }
+    }
+
+
+
+
     @Override
     public final void release(@NonNull String key) {
         release(DEFAULT_CONFIG, key);
@@ -351,11 +818,19 @@ public final class PlayerProviderImpl implements PlayerProvider {
     public final void release(@NonNull Config config) {
         Preconditions.nonNull(config);
 
-        // releasing and removing the corresponding Player Node Pool (if there's any)
-        final PlayerNodePool correspondingPool = removePoolForConfig(config);
+        PlayerCallQueue.enter();
 
-        if(correspondingPool != null) {
-            correspondingPool.release();
+        try {
+            synchronized(mPoolLock) {
+                // releasing and removing the corresponding Player Node Pool (if there's any)
+                final PlayerNodePool correspondingPool = removePoolForConfig(config);
+
+                if(correspondingPool != null) {
+                    correspondingPool.release();
+                }
+            }
+        } finally {
+            PlayerCallQueue.leave();
         }
     }
 
@@ -380,12 +855,240 @@ public final class PlayerProviderImpl implements PlayerProvider {
 
     @Override
     public final void release() {
-        for(PlayerNodePool playerNodePool : mCreatorNodePoolMap.values()) {
-            playerNodePool.release();
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mPoolLock) {
+                for(PlayerNodePool playerNodePool : mCreatorNodePoolMap.values()) {
+                    playerNodePool.release();
+                }
+
+                mConfigCreatorMap.clear();
+                mCreatorNodePoolMap.clear();
+            }
+        } finally {
+            PlayerCallQueue.leave();
         }
+    }
+
+
+
+
+    private void trimPools(int level) {
+        final boolean isCritical = isCriticalTrimLevel(level);
+
+        PlayerCallQueue.enter();
+
+        try {
+            synchronized(mPoolLock) {
+                for(PlayerNodePool playerNodePool : mCreatorNodePoolMap.values()) {
+                    // releasing either all or a half of the idle Players, depending on the memory pressure
+                    playerNodePool.trim(isCritical ? 0 : (playerNodePool.getPlayerCount() / 2));
+                }
+            }
+        } finally {
+            PlayerCallQueue.leave();
+        }
+    }
+
+
+
+
+    private static boolean isCriticalTrimLevel(int level) {
+        // the UI_HIDDEN and BACKGROUND levels lie in between the RUNNING_CRITICAL and MODERATE ones,
+        // yet they only warrant a partial trim (the app is likely to get back to the foreground)
+        return ((level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            || (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+    }
+
+
+
+
+    /**
+     * An {@link ComponentCallbacks2} used to shrink the Player Pools by releasing
+     * the oldest idle {@link Player}s whenever the system runs low on memory.
+     */
+    private final class MemoryPressureCallbacks implements ComponentCallbacks2 {
+
+
+        @Override
+        public final void onTrimMemory(int level) {
+            if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                trimPools(level);
+            }
+        }
+
+
+
+
+        @Override
+        public final void onLowMemory() {
+            trimPools(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+
+
+
+        @Override
+        public final void onConfigurationChanged(@NonNull Configuration newConfig) {
+            // do nothing.
+        }
+
+
+
+
+    }
+
+
+
+
+    /**
+     * A {@link FutureTask} used to create the {@link MediaSource} on a background thread,
+     * and to deliver the result to the {@link MediaSourceCallback} on the main thread.
+     */
+    private final class MediaSourceTask extends FutureTask<MediaSource> {
+
+
+        private final MediaSourceCallback callback;
+
+
+
+
+        MediaSourceTask(Config config, Uri uri, boolean isLooping, MediaSourceCallback callback) {
+            super(() -> createMediaSource(config, uri, isLooping));
+            this.callback = callback;
+        }
+
+
+
+
+        @Override
+        protected final void done() {
+            if((this.callback != null) && !isCancelled()) {
+                mMainHandler.post(this::deliverResult);
+            }
+        }
+
+
+
+
+        private void deliverResult() {
+            try {
+                this.callback.onMediaSourceCreated(get());
+            } catch(ExecutionException exception) {
+                this.callback.onMediaSourceCreationFailed(exception.getCause());
+            } catch(CancellationException | InterruptedException exception) {
+                // the task has been cancelled, nothing to deliver.
+            }
+        }
+
+
+
+
+    }
+
+
+
+
+    /**
+     * The outcome of a single {@link Player} acquisition, recorded once the pool lock is released.
+     * (The PlayerNode is absent while the brand-new Player is yet to be created outside of the pool lock)
+     */
+    private static final class PlayerAcquisition {
+
+
+        private final PlayerNode playerNode;
+
+        private final AcquisitionType acquisitionType;
+
+        private final long latencyInNanos;
+
+
+
+
+        PlayerAcquisition(@Nullable PlayerNode playerNode, AcquisitionType acquisitionType) {
+            // the pooled PlayerNode (if any) is yet to be initialized, so the latency is not known yet
+            this(playerNode, acquisitionType, 0L);
+        }
+
+
+
+
+        PlayerAcquisition(@Nullable PlayerNode playerNode, AcquisitionType acquisitionType, long latencyInNanos) {
+            this.playerNode = playerNode;
+            this.acquisitionType = acquisitionType;
+            this.latencyInNanos = latencyInNanos;
+        }
+
+
+
+
+    }
+
+
+
+
+    /**
+     * An {@link MessageQueue.IdleHandler} used to create and initialize the prewarmed
+     * {@link Player}s one at a time, whenever the main thread becomes idle.
+     */
+    private final class PrewarmIdleHandler implements MessageQueue.IdleHandler {
+
+
+        private final Config config;
+
+        private int remainingCount;
+
+
+
+
+        PrewarmIdleHandler(Config config, int count) {
+            this.config = config;
+            this.remainingCount = count;
+        }
+
+
+
+
+        @Override
+        public final boolean queueIdle() {
+            final PlayerCreator playerCreator;
+
+            synchronized(mPoolLock) {
+                if((this.remainingCount <= 0) || !hasRoomForPlayer()) {
+                    return false;
+                }
+
+                playerCreator = getOrInit(this.config).first;
+            }
+
+            // creating the Player ahead of time (outside of the pool lock) and parking it as a "Free" (Unbound) PlayerNode
+            final Player player = playerCreator.createPlayer();
+            player.init();
+
+            synchronized(mPoolLock) {
+                // the room might have been taken by the concurrent acquisitions in the meantime
+                if(hasRoomForPlayer()) {
+                    getOrInit(this.config).second.add(new PlayerNode(player));
+                    return (--this.remainingCount > 0);
+                }
+            }
+
+            player.release();
+
+            return false;
+        }
+
+
+
+
+        private boolean hasRoomForPlayer() {
+            return (!getOrInit(this.config).second.isFull() && !isPlayerBudgetExhausted());
+        }
+
+
+
 
-        mConfigCreatorMap.clear();
-        mCreatorNodePoolMap.clear();
     }
 
 
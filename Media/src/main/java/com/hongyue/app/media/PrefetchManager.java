@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+
+
+/**
+ * Defines a base contract for the concrete {@link PrefetchManager} implementations.
+ * (The Prefetch Manager warms up the media {@link com.google.android.exoplayer2.upstream.cache.Cache} by downloading the
+ * beginnings of the upcoming media in the background, so that their playback can start without hitting the network)
+ */
+public interface PrefetchManager {
+
+    /**
+     * Schedules the prefetching of the specified media.
+     * Uses the default Player {@link Config}.
+     * (See {@link #prefetch(Config, Uri, int)})
+     *
+     * @param uri the media uri
+     * @param distance the distance of the item from the viewport (in items)
+     */
+    void prefetch(@NonNull Uri uri, int distance);
+
+    /**
+     * Schedules the prefetching of the specified media into the {@link com.google.android.exoplayer2.upstream.cache.Cache}
+     * associated with the specified {@link Config} (no-op if the caching is disabled for the config).
+     * (The pending requests are executed in the order of their distance from the viewport;
+     * re-scheduling the pending request with a different distance re-prioritizes it)
+     *
+     * @param config the player configuration
+     * @param uri the media uri
+     * @param distance the distance of the item from the viewport (in items)
+     */
+    void prefetch(@NonNull Config config, @NonNull Uri uri, int distance);
+
+    /**
+     * Cancels the prefetching of the specified media (if scheduled or in progress).
+     *
+     * @param uri the media uri
+     */
+    void cancel(@NonNull Uri uri);
+
+    /**
+     * Cancels the prefetching of all the media.
+     */
+    void cancelAll();
+
+    /**
+     * Sets the number of the bytes to be prefetched from the beginning of each progressive media.
+     *
+     * @param prefetchLength the number of bytes
+     */
+    void setPrefetchLength(long prefetchLength);
+
+    /**
+     * Retrieves the number of the bytes to be prefetched from the beginning of each media.
+     *
+     * @return the number of bytes
+     */
+    long getPrefetchLength();
+
+    /**
+     * Sets the number of the media segments to be prefetched for each adaptive (HLS/DASH) stream.
+     * (The initialization segment of the start rendition is always prefetched along with them)
+     *
+     * @param prefetchSegmentCount the number of segments
+     */
+    void setPrefetchSegmentCount(int prefetchSegmentCount);
+
+    /**
+     * Retrieves the number of the media segments to be prefetched for each adaptive (HLS/DASH) stream.
+     *
+     * @return the number of segments
+     */
+    int getPrefetchSegmentCount();
+
+}
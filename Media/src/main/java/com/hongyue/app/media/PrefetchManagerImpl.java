@@ -0,0 +1,395 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.hongyue.app.media.player.util.PersistentBandwidthMeter;
+import com.hongyue.app.media.player.util.StartSegmentResolver;
+import com.hongyue.app.media.util.misc.ExecutorUtils;
+import com.hongyue.app.media.util.misc.ExoPlayerUtils;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A concrete implementation of the {@link PrefetchManager}.
+ * <br>
+ * The progressive media get their first bytes prefetched, while the adaptive streams (HLS and DASH) get their
+ * start rendition's initialization and first media segments prefetched (see {@link StartSegmentResolver}).
+ * <br>
+ * The requests are executed on a bounded background executor in the order of their distance from the viewport,
+ * and are tracked per media uri, so that the stale ones can be cancelled (both the pending and the running ones).
+ */
+public final class PrefetchManagerImpl implements PrefetchManager {
+
+
+    /**
+     * The default number of the bytes to be prefetched from the beginning of each media. (512KB in Bytes)
+     */
+    public static final long DEFAULT_PREFETCH_LENGTH = (512 * 1024);
+
+    /**
+     * The default number of the media segments to be prefetched for each adaptive stream.
+     */
+    public static final int DEFAULT_PREFETCH_SEGMENT_COUNT = 1;
+
+    private static final int PREFETCH_THREAD_COUNT = 2;
+
+    private static volatile PrefetchManager sInstance;
+
+    private final Context mContext;
+
+    private final String mUserAgent;
+
+    private final ThreadPoolExecutor mPrefetchExecutor;
+
+    private final AtomicLong mSequenceNumber;
+
+    private volatile long mPrefetchLength;
+
+    private volatile int mPrefetchSegmentCount;
+
+    private final Object mLock;
+
+    private final Map<Uri, PrefetchTask> mUriTaskMap;
+
+
+
+
+    public static PrefetchManager getInstance(@NonNull Context context) {
+        Preconditions.nonNull(context);
+
+        if(sInstance == null) {
+            synchronized(PrefetchManagerImpl.class) {
+                if(sInstance == null) {
+                    sInstance = new PrefetchManagerImpl(context.getApplicationContext());
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+
+
+
+    private PrefetchManagerImpl(Context context) {
+        mContext = context.getApplicationContext();
+        mUserAgent = PlayerProviderImpl.getInstance(mContext).getLibraryName();
+        mPrefetchExecutor = ExecutorUtils.newPriorityBackgroundExecutor("MediaPrefetcher", PREFETCH_THREAD_COUNT);
+        mSequenceNumber = new AtomicLong();
+        mPrefetchLength = DEFAULT_PREFETCH_LENGTH;
+        mPrefetchSegmentCount = DEFAULT_PREFETCH_SEGMENT_COUNT;
+        mLock = new Object();
+        mUriTaskMap = new HashMap<>();
+
+        // the start segments are resolved using the bandwidth estimate, so the persisted one is needed
+        PersistentBandwidthMeter.getInstance().init(mContext);
+    }
+
+
+
+
+    @Override
+    public final void prefetch(@NonNull Uri uri, int distance) {
+        prefetch(PlayerProviderImpl.DEFAULT_CONFIG, uri, distance);
+    }
+
+
+
+
+    @Override
+    public final void prefetch(@NonNull Config config, @NonNull Uri uri, int distance) {
+        Preconditions.nonNull(config);
+        Preconditions.nonNull(uri);
+        Preconditions.isTrue("The Distance cannot be negative.", (distance >= 0));
+
+        synchronized(mLock) {
+            final PrefetchTask existingTask = mUriTaskMap.get(uri);
+
+            if(existingTask != null) {
+                // the running requests (as well as the equally prioritized pending ones) are left intact
+                if(existingTask.isStarted() || (existingTask.distance == distance)) {
+                    return;
+                }
+
+                // the pending request is to be re-prioritized, so it gets replaced by a new one
+                cancelTask(existingTask);
+            }
+
+            final PrefetchTask task = new PrefetchTask(config, uri, distance);
+
+            mUriTaskMap.put(uri, task);
+            mPrefetchExecutor.execute(task);
+        }
+    }
+
+
+
+
+    @Override
+    public final void cancel(@NonNull Uri uri) {
+        Preconditions.nonNull(uri);
+
+        synchronized(mLock) {
+            final PrefetchTask task = mUriTaskMap.get(uri);
+
+            if(task != null) {
+                cancelTask(task);
+            }
+        }
+    }
+
+
+
+
+    @Override
+    public final void cancelAll() {
+        synchronized(mLock) {
+            for(PrefetchTask task : new ArrayList<>(mUriTaskMap.values())) {
+                cancelTask(task);
+            }
+        }
+    }
+
+
+
+
+    private void cancelTask(PrefetchTask task) {
+        mUriTaskMap.remove(task.uri);
+        mPrefetchExecutor.remove(task);
+        task.cancel(true);
+    }
+
+
+
+
+    private void onTaskFinished(PrefetchTask task) {
+        synchronized(mLock) {
+            // the task might have already been replaced by a newer one
+            if(mUriTaskMap.get(task.uri) == task) {
+                mUriTaskMap.remove(task.uri);
+            }
+        }
+    }
+
+
+
+
+    private DataSource createManifestDataSource(Config config) {
+        // the manifests are shared with the players via the in-memory manifest cache
+        return ExoPlayerUtils.createManifestDataSourceFactory(
+            mContext,
+            mUserAgent,
+            config
+        ).createDataSource();
+    }
+
+
+
+
+    private DataSource createUpstreamDataSource(Config config) {
+        DataSource.Factory baseFactory = config.dataSourceFactory;
+
+        // the prefetching transfers are deliberately left unmetered, as they run concurrently with the playback
+        if(baseFactory == null) {
+            baseFactory = new DefaultHttpDataSourceFactory(mUserAgent);
+        }
+
+        return new DefaultDataSourceFactory(mContext, baseFactory).createDataSource();
+    }
+
+
+
+
+    @Override
+    public final void setPrefetchLength(long prefetchLength) {
+        Preconditions.isTrue("The Prefetch Length must be positive.", (prefetchLength > 0));
+        mPrefetchLength = prefetchLength;
+    }
+
+
+
+
+    @Override
+    public final long getPrefetchLength() {
+        return mPrefetchLength;
+    }
+
+
+
+
+    @Override
+    public final void setPrefetchSegmentCount(int prefetchSegmentCount) {
+        Preconditions.isTrue("The Prefetch Segment Count must be positive.", (prefetchSegmentCount > 0));
+        mPrefetchSegmentCount = prefetchSegmentCount;
+    }
+
+
+
+
+    @Override
+    public final int getPrefetchSegmentCount() {
+        return mPrefetchSegmentCount;
+    }
+
+
+
+
+    /**
+     * A prefetch request, ordered by the distance from the viewport (and then by the order of submission).
+     */
+    private final class PrefetchTask extends FutureTask<Void> implements Comparable<PrefetchTask> {
+
+
+        private final Uri uri;
+
+        private final int distance;
+
+        private final long sequenceNumber;
+
+        private final AtomicBoolean isStarted;
+        private final AtomicBoolean isCanceled;
+
+
+
+
+        PrefetchTask(Config config, Uri uri, int distance) {
+            this(config, uri, distance, new AtomicBoolean(), new AtomicBoolean());
+        }
+
+
+
+
+        private PrefetchTask(Config config, Uri uri, int distance, AtomicBoolean isStarted, AtomicBoolean isCanceled) {
+            super(() -> {
+                isStarted.set(true);
+
+                final Cache cache = ExoPlayerUtils.getCache(mContext, config);
+
+                if((cache == null) || isCanceled.get()) {
+                    return null;
+                }
+
+                // the adaptive streams get their manifests parsed in order to find the start segments
+                final List<DataSpec> dataSpecs = StartSegmentResolver.resolve(
+                    createManifestDataSource(config),
+                    uri,
+                    config.meter.getBitrateEstimate(),
+                    mPrefetchSegmentCount,
+                    mPrefetchLength
+                );
+
+                final PriorityTaskManager priorityTaskManager = ExoPlayerUtils.getPriorityTaskManager();
+                priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
+
+                try {
+                    for(DataSpec dataSpec : dataSpecs) {
+                        // yielding the network to the buffering playing media
+                        priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
+
+                        if(isCanceled.get()) {
+                            break;
+                        }
+
+                        CacheUtil.cache(
+                            dataSpec,
+                            cache,
+                            null,
+                            createUpstreamDataSource(config),
+                            null,
+                            isCanceled
+                        );
+                    }
+                } finally {
+                    priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
+                }
+
+                return null;
+            });
+
+            this.uri = uri;
+            this.distance = distance;
+            this.sequenceNumber = mSequenceNumber.getAndIncrement();
+            this.isStarted = isStarted;
+            this.isCanceled = isCanceled;
+        }
+
+
+
+
+        @Override
+        public final boolean cancel(boolean mayInterruptIfRunning) {
+            this.isCanceled.set(true);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+
+
+
+        @Override
+        protected final void done() {
+            // the prefetching is a best-effort optimization, so the failures are simply dropped
+            onTaskFinished(this);
+        }
+
+
+
+
+        final boolean isStarted() {
+            return this.isStarted.get();
+        }
+
+
+
+
+        @Override
+        public final int compareTo(@NonNull PrefetchTask other) {
+            if(this.distance != other.distance) {
+                return ((this.distance < other.distance) ? -1 : 1);
+            }
+
+            return Long.compare(this.sequenceNumber, other.sequenceNumber);
+        }
+
+
+
+
+    }
+
+
+
+
+}
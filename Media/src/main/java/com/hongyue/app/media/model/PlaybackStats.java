@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.model;
+
+import androidx.annotation.NonNull;
+
+import com.hongyue.app.media.util.metrics.LatencyHistogram;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * A model object used to represent the snapshot of the playback statistics,
+ * that is the number and the duration of the playback events (the first frame renderings,
+ * the buffering stalls and the seeks) per {@link EventType}.
+ */
+public final class PlaybackStats {
+
+
+    /**
+     * Defines the type of the measured playback event.
+     */
+    public enum EventType {
+
+        /**
+         * The first frame has been rendered after the start of the playback.
+         * (The duration is the time-to-first-frame)
+         */
+        FIRST_FRAME,
+
+        /**
+         * The ongoing playback has stalled to buffer more data.
+         * (The duration is the time spent buffering)
+         */
+        REBUFFER,
+
+        /**
+         * The seek has been completed.
+         * (The duration is the time from the seek request till the player is ready again)
+         */
+        SEEK
+
+    }
+
+
+    private final LatencyHistogram.Snapshot[] durationSnapshots;
+
+
+
+
+    public PlaybackStats(@NonNull LatencyHistogram.Snapshot[] durationSnapshots) {
+        Preconditions.nonNull(durationSnapshots);
+        Preconditions.isTrue("There must be a snapshot per Event Type.", (durationSnapshots.length == EventType.values().length));
+
+        this.durationSnapshots = durationSnapshots;
+    }
+
+
+
+
+    /**
+     * Retrieves the number of the events of the specified type.
+     *
+     * @param eventType the event type
+     * @return the number of the events
+     */
+    public final long getCount(@NonNull EventType eventType) {
+        return getDuration(eventType).getCount();
+    }
+
+
+
+
+    /**
+     * Retrieves the duration histogram snapshot of the events of the specified type.
+     *
+     * @param eventType the event type
+     * @return the duration histogram snapshot
+     */
+    @NonNull
+    public final LatencyHistogram.Snapshot getDuration(@NonNull EventType eventType) {
+        Preconditions.nonNull(eventType);
+        return this.durationSnapshots[eventType.ordinal()];
+    }
+
+
+
+
+    /**
+     * Retrieves the number of the buffering stalls.
+     *
+     * @return the number of the buffering stalls
+     */
+    public final long getRebufferCount() {
+        return getCount(EventType.REBUFFER);
+    }
+
+
+
+
+    /**
+     * Retrieves the total time spent in the buffering stalls (in nanoseconds).
+     *
+     * @return the total buffering stall duration (in nanoseconds)
+     */
+    public final long getTotalRebufferDuration() {
+        return getDuration(EventType.REBUFFER).getTotalLatency();
+    }
+
+
+
+
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder("PlaybackStats{");
+
+        for(EventType eventType : EventType.values()) {
+            final LatencyHistogram.Snapshot duration = getDuration(eventType);
+
+            builder.append(eventType)
+                .append("=[count=").append(duration.getCount())
+                .append(", meanNs=").append(duration.getMeanLatency())
+                .append(", p90Ns=").append(duration.getPercentile(0.9))
+                .append(", maxNs=").append(duration.getMaxLatency())
+                .append("], ");
+        }
+
+        return builder.append("totalRebufferNs=").append(getTotalRebufferDuration()).append("}").toString();
+    }
+
+
+
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.model;
+
+import androidx.annotation.NonNull;
+
+import com.hongyue.app.media.util.metrics.LatencyHistogram;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * A model object used to represent the snapshot of the Player Pool statistics,
+ * that is the number and the latency of the {@link com.hongyue.app.media.player.Player} acquisitions
+ * per {@link AcquisitionType}.
+ */
+public final class PlayerPoolStats {
+
+
+    /**
+     * Defines how the {@link com.hongyue.app.media.player.Player} has been acquired from the pool.
+     */
+    public enum AcquisitionType {
+
+        /**
+         * The Player already registered for the requested key has been reused.
+         */
+        HIT,
+
+        /**
+         * A free (unbound) Player has been reused.
+         */
+        FREE_REUSE,
+
+        /**
+         * The least recently used Player has been evicted and reused (or replaced).
+         */
+        EVICTION,
+
+        /**
+         * A brand-new Player has been constructed and initialized.
+         */
+        CREATION
+
+    }
+
+
+    private final LatencyHistogram.Snapshot[] latencySnapshots;
+
+
+
+
+    public PlayerPoolStats(@NonNull LatencyHistogram.Snapshot[] latencySnapshots) {
+        Preconditions.nonNull(latencySnapshots);
+        Preconditions.isTrue("There must be a snapshot per Acquisition Type.", (latencySnapshots.length == AcquisitionType.values().length));
+
+        this.latencySnapshots = latencySnapshots;
+    }
+
+
+
+
+    /**
+     * Retrieves the number of the acquisitions of the specified type.
+     *
+     * @param acquisitionType the acquisition type
+     * @return the number of the acquisitions
+     */
+    public final long getCount(@NonNull AcquisitionType acquisitionType) {
+        return getLatency(acquisitionType).getCount();
+    }
+
+
+
+
+    /**
+     * Retrieves the total number of the acquisitions.
+     *
+     * @return the total number of the acquisitions
+     */
+    public final long getTotalCount() {
+        long totalCount = 0L;
+
+        for(LatencyHistogram.Snapshot latencySnapshot : this.latencySnapshots) {
+            totalCount += latencySnapshot.getCount();
+        }
+
+        return totalCount;
+    }
+
+
+
+
+    /**
+     * Retrieves the latency histogram snapshot of the acquisitions of the specified type.
+     *
+     * @param acquisitionType the acquisition type
+     * @return the latency histogram snapshot
+     */
+    @NonNull
+    public final LatencyHistogram.Snapshot getLatency(@NonNull AcquisitionType acquisitionType) {
+        Preconditions.nonNull(acquisitionType);
+        return this.latencySnapshots[acquisitionType.ordinal()];
+    }
+
+
+
+
+    /**
+     * Retrieves the ratio of the acquisitions that did not require the construction of a brand-new Player.
+     *
+     * @return the reuse ratio (a value between 0.0 and 1.0)
+     */
+    public final float getReuseRatio() {
+        final long totalCount = getTotalCount();
+        return ((totalCount > 0L) ? ((totalCount - getCount(AcquisitionType.CREATION)) / (float) totalCount) : 0f);
+    }
+
+
+
+
+    @Override
+    public final String toString() {
+        final StringBuilder builder = new StringBuilder("PlayerPoolStats{");
+
+        for(AcquisitionType acquisitionType : AcquisitionType.values()) {
+            final LatencyHistogram.Snapshot latency = getLatency(acquisitionType);
+
+            builder.append(acquisitionType)
+                .append("=[count=").append(latency.getCount())
+                .append(", meanNs=").append(latency.getMeanLatency())
+                .append(", p90Ns=").append(latency.getPercentile(0.9))
+                .append(", maxNs=").append(latency.getMaxLatency())
+                .append("], ");
+        }
+
+        return builder.append("reuseRatio=").append(getReuseRatio()).append("}").toString();
+    }
+
+
+
+
+}
@@ -17,6 +17,7 @@
 package com.hongyue.app.media.player;
 
 import android.content.Context;
+import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -27,12 +28,15 @@ import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
 import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.ui.PlayerView;
 import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.hongyue.app.media.player.loadcontrol.ProfiledLoadControl;
 import com.hongyue.app.media.player.util.DefaultVolumeController;
 import com.hongyue.app.media.player.util.PlayerEventListenerRegistry;
 import com.hongyue.app.media.player.util.VolumeController;
+import com.hongyue.app.media.util.metrics.PlaybackMetricsTracker;
 import com.hongyue.app.media.util.misc.ExoPlayerUtils;
 import com.hongyue.app.media.util.misc.Preconditions;
 
@@ -50,18 +54,25 @@ public class DefaultPlayer implements Player {
 
     private PlayerEventListenerRegistry eventHandler;
 
+    private final PlaybackMetricsTracker metricsTracker;
+
     private RenderersFactory renderersFactory;
     private TrackSelector trackSelector;
     private LoadControl loadControl;
     private BandwidthMeter bandwidthMeter;
     private DrmSessionManager<FrameworkMediaCrypto> drmSessionManager;
     private MediaSource mediaSource;
+    private MediaSource preparedMediaSource;
 
     private SimpleExoPlayer exoPlayer;
     private VolumeController volumeController;
 
     private AttachmentStateDelegate attachmentStateDelegate;
 
+    private final View.OnLayoutChangeListener viewportLayoutListener;
+
+    private View viewportView;
+
 
 
 
@@ -107,11 +118,13 @@ public class DefaultPlayer implements Player {
                          @Nullable DrmSessionManager<FrameworkMediaCrypto> drmSessionManager) {
         this.context = checkNonNull(context).getApplicationContext();
         this.eventHandler = new PlayerEventListenerRegistry();
+        this.metricsTracker = new PlaybackMetricsTracker();
         this.renderersFactory = checkNonNull(renderersFactory);
         this.trackSelector = checkNonNull(trackSelector);
         this.loadControl = checkNonNull(loadControl);
         this.bandwidthMeter = bandwidthMeter;
         this.drmSessionManager = drmSessionManager;
+        this.viewportLayoutListener = (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> updateViewportSize(view);
     }
 
 
@@ -133,6 +146,8 @@ public class DefaultPlayer implements Player {
             this.bandwidthMeter
         );
         this.exoPlayer.addListener(this.eventHandler);
+        this.exoPlayer.addListener(this.metricsTracker);
+        this.exoPlayer.addVideoListener(this.metricsTracker);
         this.volumeController = new DefaultVolumeController(this.exoPlayer);
     }
 
@@ -144,11 +159,24 @@ public class DefaultPlayer implements Player {
         checkPlayerState();
         checkMediaSource();
 
+        // the very same Media Source is still prepared (e.g. the playback has merely been paused),
+        // so the already loaded media can be reused without any re-buffering
+        if(isPrepared()) {
+            if(resetPosition) {
+                this.metricsTracker.onSeekRequested();
+                this.exoPlayer.seekToDefaultPosition();
+            }
+
+            return;
+        }
+
+        this.metricsTracker.onMediaChanged();
         this.exoPlayer.prepare(
             this.mediaSource,
             resetPosition,
             false
         );
+        this.preparedMediaSource = this.mediaSource;
     }
 
 
@@ -158,16 +186,39 @@ public class DefaultPlayer implements Player {
     public final void play() {
         checkPlayerState();
 
+        // the played media gets the full buffering budget (as opposed to the preloaded one)
+        setBufferingActive(true);
+
+        this.metricsTracker.onPlayRequested();
         this.exoPlayer.setPlayWhenReady(true);
     }
 
 
 
 
+    @Override
+    public final void setPlaybackKey(@Nullable String key) {
+        this.metricsTracker.setKey(key);
+    }
+
+
+
+
+    @Override
+    public final void setBufferingActive(boolean isActive) {
+        if(this.loadControl instanceof ProfiledLoadControl) {
+            ((ProfiledLoadControl) this.loadControl).setActive(isActive);
+        }
+    }
+
+
+
+
     @Override
     public final void pause() {
         checkPlayerState();
 
+        this.metricsTracker.onPauseRequested();
         this.exoPlayer.setPlayWhenReady(false);
     }
 
@@ -188,6 +239,11 @@ public class DefaultPlayer implements Player {
     public final void seek(final long positionInMillis) {
         checkPlayerState();
 
+        // seeking prior to the preparation merely sets the start position (e.g. of the preloaded media)
+        if(isPrepared()) {
+            this.metricsTracker.onSeekRequested();
+        }
+
         this.exoPlayer.seekTo(positionInMillis);
     }
 
@@ -202,8 +258,13 @@ public class DefaultPlayer implements Player {
 
         this.exoPlayer.release();
         this.exoPlayer = null;
+        this.preparedMediaSource = null;
         this.attachmentStateDelegate = null;
 
+        if(this.viewportView != null) {
+            unbindViewport(this.viewportView);
+        }
+
         removeAllEventListeners();
     }
 
@@ -215,7 +276,12 @@ public class DefaultPlayer implements Player {
         Preconditions.nonNull(playerView);
         checkPlayerState();
 
+        if(playerView.getPlayer() != this.exoPlayer) {
+            this.metricsTracker.onSurfaceChanged();
+        }
+
         playerView.setPlayer(this.exoPlayer);
+        bindViewport(playerView);
     }
 
 
@@ -226,7 +292,66 @@ public class DefaultPlayer implements Player {
         Preconditions.nonNull(playerView);
         checkPlayerState();
 
+        if(playerView.getPlayer() == this.exoPlayer) {
+            this.metricsTracker.onSurfaceChanged();
+        }
+
         playerView.setPlayer(null);
+        unbindViewport(playerView);
+    }
+
+
+
+
+    private void bindViewport(View playerView) {
+        if(this.viewportView != null) {
+            this.viewportView.removeOnLayoutChangeListener(this.viewportLayoutListener);
+        }
+
+        // the track selection follows the size of the view (e.g. when it goes fullscreen)
+        this.viewportView = playerView;
+        this.viewportView.addOnLayoutChangeListener(this.viewportLayoutListener);
+
+        updateViewportSize(playerView);
+    }
+
+
+
+
+    private void unbindViewport(View playerView) {
+        if(this.viewportView != playerView) {
+            return;
+        }
+
+        // the last viewport constraints are kept, so that the detached (e.g. parked) player
+        // does not switch to the bigger renditions of the already prepared media
+        this.viewportView.removeOnLayoutChangeListener(this.viewportLayoutListener);
+        this.viewportView = null;
+    }
+
+
+
+
+    private void updateViewportSize(View playerView) {
+        final int width = playerView.getWidth();
+        final int height = playerView.getHeight();
+
+        // the view has not been laid out yet (the size will be reported by the layout listener)
+        if((width <= 0) || (height <= 0) || !(this.trackSelector instanceof DefaultTrackSelector)) {
+            return;
+        }
+
+        final DefaultTrackSelector trackSelector = (DefaultTrackSelector) this.trackSelector;
+        final DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
+
+        if((parameters.viewportWidth == width) && (parameters.viewportHeight == height)) {
+            return;
+        }
+
+        // selecting the renditions that match the actual on-screen size of the view
+        trackSelector.setParameters(
+            trackSelector.buildUponParameters().setViewportSize(width, height, false)
+        );
     }
 
 
@@ -373,6 +498,17 @@ public class DefaultPlayer implements Player {
 
 
 
+    private boolean isPrepared() {
+        return (
+            (this.preparedMediaSource != null)
+            && (this.preparedMediaSource == this.mediaSource)
+            && (getPlaybackState() != PlaybackState.IDLE)
+        );
+    }
+
+
+
+
     @Override
     public final boolean isInitialized() {
         return (this.exoPlayer != null);
@@ -149,6 +149,24 @@ public interface Player {
      */
     void removeAllEventListeners();
 
+    /**
+     * Sets the key of the Playable the {@link Player} currently plays the media of,
+     * so that the measured playback statistics can be attributed to it.
+     * (See {@link com.hongyue.app.media.PlayerProvider#getPlaybackStats()})
+     *
+     * @param key the Playable key, or null if there's none
+     */
+    void setPlaybackKey(@Nullable String key);
+
+    /**
+     * Switches the {@link Player} between the "active" (the one being played) and the "preload" buffering budgets.
+     * (Takes effect only if the Player's LoadControl supports the switching, see
+     * {@link com.hongyue.app.media.player.loadcontrol.ProfiledLoadControl})
+     *
+     * @param isActive whether the "active" buffering budget is to be used
+     */
+    void setBufferingActive(boolean isActive);
+
     /**
      * Sets the {@link MediaSource} to be be used for the media data retrieval by the {@link Player}.
      *
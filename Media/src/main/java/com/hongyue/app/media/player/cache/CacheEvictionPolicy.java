@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.cache;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+
+
+/**
+ * The {@link CacheEvictor} factory.
+ */
+public enum CacheEvictionPolicy {
+
+
+    /**
+     * The least recently used media get evicted first.
+     * (Suits the linear playback, but the one-shot media easily flush the frequently re-watched ones out)
+     */
+    LRU {
+        @NonNull
+        @Override
+        public CacheEvictor create(long maxBytes) {
+            return new LeastRecentlyUsedCacheEvictor(maxBytes);
+        }
+    },
+
+    /**
+     * The frequency-aware W-TinyLFU policy (see {@link TinyLfuCacheEvictor}).
+     * (Suits the feed-like workloads, where the frequently re-watched media are mixed with the one-shot ones)
+     */
+    TINY_LFU {
+        @NonNull
+        @Override
+        public CacheEvictor create(long maxBytes) {
+            return new TinyLfuCacheEvictor(maxBytes);
+        }
+    };
+
+
+    /**
+     * Creates a new instance of the {@link CacheEvictor}.
+     *
+     * @param maxBytes the maximum size of the cache (in bytes)
+     * @return the created {@link CacheEvictor}
+     */
+    @NonNull
+    public abstract CacheEvictor create(long maxBytes);
+
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.cache;
+
+import androidx.annotation.NonNull;
+
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * A Count-Min Sketch of the 4-bit counters used to estimate the access frequencies of the cached media.
+ * <br>
+ * The counters are halved once the number of the recorded accesses reaches the sample size,
+ * so that the estimates reflect the recent history rather than the whole lifetime of the cache.
+ */
+final class FrequencySketch {
+
+
+    private static final int DEPTH = 4;
+
+    private static final int MAX_COUNT = 15;
+
+    private static final int[] SEEDS = {
+        0x97CB3127,
+        0xB71C8E5D,
+        0xA5F1C3D9,
+        0xE3B8F1A7
+    };
+
+    private final byte[][] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additionCount;
+
+
+
+
+    FrequencySketch(int expectedItemCount) {
+        Preconditions.isTrue("The Expected Item Count must be positive.", (expectedItemCount > 0));
+
+        final int width = Integer.highestOneBit(Math.max(16, (expectedItemCount - 1)) << 1);
+
+        this.table = new byte[DEPTH][width];
+        this.mask = (width - 1);
+        this.sampleSize = (10 * width);
+        this.additionCount = 0;
+    }
+
+
+
+
+    final void increment(@NonNull String key) {
+        final int hash = spread(key.hashCode());
+        boolean isIncremented = false;
+        int index;
+
+        for(int i = 0; i < DEPTH; i++) {
+            index = indexOf(hash, i);
+
+            if(this.table[i][index] < MAX_COUNT) {
+                this.table[i][index]++;
+                isIncremented = true;
+            }
+        }
+
+        if(isIncremented && (++this.additionCount >= this.sampleSize)) {
+            reset();
+        }
+    }
+
+
+
+
+    final int frequency(@NonNull String key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for(int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, this.table[i][indexOf(hash, i)]);
+        }
+
+        return frequency;
+    }
+
+
+
+
+    private void reset() {
+        for(byte[] row : this.table) {
+            for(int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+
+        this.additionCount = (this.additionCount / 2);
+    }
+
+
+
+
+    private int indexOf(int hash, int row) {
+        int h = (hash * SEEDS[row]);
+        h ^= (h >>> 16);
+
+        return (h & this.mask);
+    }
+
+
+
+
+    private static int spread(int hash) {
+        int h = (hash * 0x9E3779B9);
+        h ^= (h >>> 15);
+
+        return h;
+    }
+
+
+
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.cache;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A frequency-aware {@link CacheEvictor} based on the W-TinyLFU policy, which is better suited for the
+ * feed-like workloads than the plain LRU one (the stream of the one-shot media does not flush
+ * the few frequently re-watched ones out of the cache).
+ * <br>
+ * The cached media (all the spans of a single cache key) are first placed into a small LRU window.
+ * Once the window overflows, its least recently used media has to compete for the place within the main LRU
+ * segment with the main segment's least recently used media, and the one with the lower estimated
+ * access frequency (see {@link FrequencySketch}) is the one to be evicted.
+ */
+public final class TinyLfuCacheEvictor implements CacheEvictor {
+
+
+    /**
+     * The default share of the cache size dedicated to the LRU window.
+     */
+    public static final float DEFAULT_WINDOW_RATIO = 0.1f;
+
+    // used to estimate the number of the distinct media the cache can hold
+    private static final long EXPECTED_AVERAGE_MEDIA_SIZE = (1024 * 1024);
+
+    private final long maxBytes;
+    private final long maxWindowBytes;
+
+    private final FrequencySketch frequencySketch;
+
+    private final LinkedHashMap<String, Entry> windowEntryMap;
+    private final LinkedHashMap<String, Entry> mainEntryMap;
+
+    // the segment maps are access-ordered, so the plain lookups go through this index instead
+    private final Map<String, Entry> entryMap;
+
+    private long windowSize;
+    private long mainSize;
+
+
+
+
+    public TinyLfuCacheEvictor(long maxBytes) {
+        this(maxBytes, DEFAULT_WINDOW_RATIO);
+    }
+
+
+
+
+    public TinyLfuCacheEvictor(long maxBytes, float windowRatio) {
+        Preconditions.isTrue("The Max Bytes must be positive.", (maxBytes > 0L));
+        Preconditions.isTrue("The Window Ratio must lie within (0.0, 1.0).", ((windowRatio > 0f) && (windowRatio < 1f)));
+
+        this.maxBytes = maxBytes;
+        this.maxWindowBytes = Math.max(1L, (long) (maxBytes * windowRatio));
+        this.frequencySketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(1L, (maxBytes / EXPECTED_AVERAGE_MEDIA_SIZE))));
+        this.windowEntryMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.mainEntryMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.entryMap = new HashMap<>();
+        this.windowSize = 0L;
+        this.mainSize = 0L;
+    }
+
+
+
+
+    @Override
+    public final boolean requiresCacheSpanTouches() {
+        return true;
+    }
+
+
+
+
+    @Override
+    public final void onCacheInitialized() {
+        // do nothing.
+    }
+
+
+
+
+    @Override
+    public final void onStartFile(Cache cache, String key, long position, long length) {
+        this.frequencySketch.increment(key);
+
+        if(length != C.LENGTH_UNSET) {
+            evictCache(cache, length);
+        }
+    }
+
+
+
+
+    @Override
+    public final void onSpanAdded(Cache cache, CacheSpan span) {
+        Entry entry = getEntry(span.key);
+
+        // the new media always start off within the window
+        if(entry == null) {
+            entry = new Entry(span.key);
+            this.windowEntryMap.put(span.key, entry);
+            this.entryMap.put(span.key, entry);
+        } else {
+            touchEntry(entry);
+        }
+
+        entry.spans.add(span);
+        updateSize(entry, span.length);
+
+        promoteWindowOverflow();
+        evictCache(cache, 0L);
+    }
+
+
+
+
+    @Override
+    public final void onSpanRemoved(Cache cache, CacheSpan span) {
+        final Entry entry = getEntry(span.key);
+
+        if((entry == null) || !entry.spans.remove(span)) {
+            return;
+        }
+
+        updateSize(entry, -span.length);
+
+        if(entry.spans.isEmpty()) {
+            removeEntry(entry);
+        }
+    }
+
+
+
+
+    @Override
+    public final void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        final Entry entry = getEntry(oldSpan.key);
+
+        if((entry == null) || !entry.spans.remove(oldSpan)) {
+            onSpanAdded(cache, newSpan);
+        } else {
+            // re-accessing the media within the segment it currently belongs to
+            touchEntry(entry);
+
+            entry.spans.add(newSpan);
+            updateSize(entry, (newSpan.length - oldSpan.length));
+        }
+
+        this.frequencySketch.increment(newSpan.key);
+    }
+
+
+
+
+    private void evictCache(Cache cache, long requiredSpace) {
+        Entry victim;
+
+        while(((this.windowSize + this.mainSize + requiredSpace) > this.maxBytes)
+                && ((victim = selectVictim()) != null)) {
+            for(CacheSpan span : new ArrayList<>(victim.spans)) {
+                cache.removeSpan(span);
+            }
+
+            // making sure the loop advances even if some of the spans could not be removed
+            if(getEntry(victim.key) == victim) {
+                removeEntry(victim);
+            }
+        }
+    }
+
+
+
+
+    private Entry selectVictim() {
+        final Entry windowCandidate = getEldest(this.windowEntryMap);
+        final Entry mainVictim = getEldest(this.mainEntryMap);
+
+        if((windowCandidate == null) || (mainVictim == null)) {
+            return ((windowCandidate != null) ? windowCandidate : mainVictim);
+        }
+
+        // the window is within its budget, so the space is to be reclaimed from the main segment
+        if(this.windowSize <= this.maxWindowBytes) {
+            return mainVictim;
+        }
+
+        // the admission duel: the more frequently accessed media get to stay
+        if(this.frequencySketch.frequency(windowCandidate.key) > this.frequencySketch.frequency(mainVictim.key)) {
+            moveToMain(windowCandidate);
+            return mainVictim;
+        }
+
+        return windowCandidate;
+    }
+
+
+
+
+    private void promoteWindowOverflow() {
+        Entry candidate;
+
+        // the window overflow is moved to the main segment for free while the latter has the room for it
+        while((this.windowSize > this.maxWindowBytes)
+                && (this.windowEntryMap.size() > 1)
+                && ((candidate = getEldest(this.windowEntryMap)) != null)
+                && ((this.mainSize + candidate.size) <= (this.maxBytes - this.maxWindowBytes))) {
+            moveToMain(candidate);
+        }
+    }
+
+
+
+
+    private void moveToMain(Entry entry) {
+        this.windowEntryMap.remove(entry.key);
+        this.windowSize -= entry.size;
+
+        entry.isInMain = true;
+
+        this.mainEntryMap.put(entry.key, entry);
+        this.mainSize += entry.size;
+    }
+
+
+
+
+    private Entry getEntry(String key) {
+        return this.entryMap.get(key);
+    }
+
+
+
+
+    private void touchEntry(Entry entry) {
+        // moving the entry to the tail of its access-ordered segment
+        if(entry.isInMain) {
+            this.mainEntryMap.get(entry.key);
+        } else {
+            this.windowEntryMap.get(entry.key);
+        }
+    }
+
+
+
+
+    private void removeEntry(Entry entry) {
+        this.entryMap.remove(entry.key);
+
+        if(entry.isInMain) {
+            this.mainEntryMap.remove(entry.key);
+            this.mainSize -= entry.size;
+        } else {
+            this.windowEntryMap.remove(entry.key);
+            this.windowSize -= entry.size;
+        }
+    }
+
+
+
+
+    private void updateSize(Entry entry, long delta) {
+        entry.size += delta;
+
+        if(entry.isInMain) {
+            this.mainSize += delta;
+        } else {
+            this.windowSize += delta;
+        }
+    }
+
+
+
+
+    private static Entry getEldest(Map<String, Entry> entryMap) {
+        return (!entryMap.isEmpty() ? entryMap.values().iterator().next() : null);
+    }
+
+
+
+
+    /**
+     * All the cached spans of a single cache key (media).
+     */
+    private static final class Entry {
+
+
+        private final String key;
+
+        private final Set<CacheSpan> spans;
+
+        private long size;
+
+        private boolean isInMain;
+
+
+
+
+        Entry(@NonNull String key) {
+            this.key = key;
+            this.spans = new HashSet<>();
+            this.size = 0L;
+            this.isInMain = false;
+        }
+
+
+
+
+    }
+
+
+
+
+}
@@ -17,7 +17,6 @@
 package com.hongyue.app.media.player.creators;
 
 import android.net.Uri;
-import android.os.Handler;
 import androidx.annotation.NonNull;
 
 import com.google.android.exoplayer2.DefaultRenderersFactory;
@@ -25,19 +24,25 @@ import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.RenderersFactory;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
-import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.upstream.BandwidthMeter;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
-import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.hongyue.app.media.Config;
 import com.hongyue.app.media.PlayerProvider;
 import com.hongyue.app.media.player.DefaultPlayer;
 import com.hongyue.app.media.player.Player;
+import com.hongyue.app.media.player.datasource.DeferredCacheDataSourceFactory;
+import com.hongyue.app.media.player.loadcontrol.LoadControlProfile;
+import com.hongyue.app.media.player.loadcontrol.ProfiledLoadControl;
 import com.hongyue.app.media.player.util.MediaSourceBuilder;
+import com.hongyue.app.media.util.misc.ExoPlayerUtils;
 import com.hongyue.app.media.util.misc.Preconditions;
 
+import java.util.concurrent.Future;
+
 import static com.hongyue.app.media.util.misc.Preconditions.checkNonNull;
 
 
@@ -51,8 +56,9 @@ public final class DefaultPlayerCreator implements PlayerCreator {
 
     public final PlayerProvider playerProvider;
 
-    private final TrackSelector trackSelector;
     private final LoadControl loadControl;
+    private final LoadControlProfile activeLoadControlProfile;
+    private final LoadControlProfile preloadLoadControlProfile;
     private final BandwidthMeter bandwidthMeter;
     private final MediaSourceBuilder mediaSourceBuilder;
     private final RenderersFactory renderersFactory;
@@ -67,15 +73,20 @@ public final class DefaultPlayerCreator implements PlayerCreator {
         Preconditions.nonNull(config);
 
         this.playerProvider = checkNonNull(playerProvider);
-        this.trackSelector = new DefaultTrackSelector();
         this.loadControl = config.loadControl;
+        this.activeLoadControlProfile = config.activeLoadControlProfile;
+        this.preloadLoadControlProfile = config.preloadLoadControlProfile;
         this.bandwidthMeter = config.meter;
         this.mediaSourceBuilder = config.mediaSourceBuilder;
         this.renderersFactory = new DefaultRenderersFactory(
             playerProvider.getContext()
         );
         this.mediaDataSourceFactory = createDataSourceFactory(playerProvider, config);
-        this.manifestDataSourceFactory = new DefaultDataSourceFactory(playerProvider.getContext(), playerProvider.getLibraryName());
+        this.manifestDataSourceFactory = ExoPlayerUtils.createManifestDataSourceFactory(
+            playerProvider.getContext(),
+            playerProvider.getLibraryName(),
+            config
+        );
     }
 
 
@@ -88,18 +99,37 @@ public final class DefaultPlayerCreator implements PlayerCreator {
             baseFactory = new DefaultHttpDataSourceFactory(playerProvider.getLibraryName(), config.meter);
         }
 
-        DataSource.Factory factory = new DefaultDataSourceFactory(
-            playerProvider.getContext(),
-            config.meter,
-            baseFactory
-        );
+        final Future<Cache> cacheFuture = ExoPlayerUtils.getCacheAsync(playerProvider.getContext(), config);
 
-//        //禁用缓存
-//        if(config.cache != null) {
-//            factory = new CacheDataSourceFactory(config.cache, factory);
-//        }
+        if(cacheFuture == null) {
+            return new DefaultDataSourceFactory(
+                playerProvider.getContext(),
+                config.meter,
+                baseFactory
+            );
+        }
+
+        // only the network transfers are metered (the disk reads would skew the bandwidth estimate),
+        // while the already cached spans are served straight from the disk
+        final DataSource.Factory upstreamFactory = baseFactory;
+        final DataSource.Factory meteredUpstreamFactory = () -> {
+            final DataSource dataSource = upstreamFactory.createDataSource();
+            dataSource.addTransferListener(config.meter);
+
+            return dataSource;
+        };
+
+        // the cache is initialized in the background, so the upstream is used directly until it's ready
+        final DataSource.Factory cacheDataSourceFactory = new DeferredCacheDataSourceFactory(
+            cacheFuture,
+            meteredUpstreamFactory,
+            CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR
+        );
 
-        return factory;
+        return new DefaultDataSourceFactory(
+            playerProvider.getContext(),
+            cacheDataSourceFactory
+        );
     }
 
 
@@ -112,10 +142,26 @@ public final class DefaultPlayerCreator implements PlayerCreator {
         return new DefaultPlayer(
             this.playerProvider.getContext(),
             this.renderersFactory,
-            this.trackSelector,
-            this.loadControl,
+            new DefaultTrackSelector(this.playerProvider.getContext()),
+            createLoadControl(),
             this.bandwidthMeter
+        );
+    }
+
+
+
+
+    private LoadControl createLoadControl() {
+        if(this.loadControl != null) {
+            return this.loadControl;
+        }
 
+        // the LoadControl is fixed per ExoPlayer, so each Player gets its own switchable one
+        // (the loading of all the Players is arbitrated by the shared priority manager)
+        return new ProfiledLoadControl(
+            this.activeLoadControlProfile,
+            this.preloadLoadControlProfile,
+            ExoPlayerUtils.getPriorityTaskManager()
         );
     }
 
@@ -141,7 +187,7 @@ public final class DefaultPlayerCreator implements PlayerCreator {
             this.playerProvider.getContext(),
             uri,
             extension,
-            new Handler(),
+            null,
             this.manifestDataSourceFactory,
             this.mediaDataSourceFactory,
             null
@@ -156,8 +202,9 @@ public final class DefaultPlayerCreator implements PlayerCreator {
         final int prime = 31;
         int result = 17;
         result = ((prime * result) + this.playerProvider.hashCode());
-        result = ((prime * result) + this.trackSelector.hashCode());
-        result = ((prime * result) + this.loadControl.hashCode());
+        result = ((prime * result) + ((this.loadControl != null) ? this.loadControl.hashCode() : 0));
+        result = ((prime * result) + this.activeLoadControlProfile.hashCode());
+        result = ((prime * result) + this.preloadLoadControlProfile.hashCode());
         result = ((prime * result) + this.mediaSourceBuilder.hashCode());
         result = ((prime * result) + this.renderersFactory.hashCode());
         result = ((prime * result) + this.mediaDataSourceFactory.hashCode());
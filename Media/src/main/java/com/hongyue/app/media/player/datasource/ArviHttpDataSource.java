@@ -21,6 +21,8 @@ import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
 import com.google.android.exoplayer2.util.Predicate;
 import com.hongyue.app.media.player.util.HttpHeaders;
 
+import java.io.IOException;
+
 
 /**
  * An implementation of the {@link DefaultHttpDataSource} with a support
@@ -86,7 +88,12 @@ public class ArviHttpDataSource extends DefaultHttpDataSource {
     @Override
     public final long open(DataSpec dataSpec) throws HttpDataSourceException {
         if(requestAuthorizer != null) {
-            setRequestProperty(HttpHeaders.AUTHORIZATION, requestAuthorizer.getAuthorization());
+            try {
+                setRequestProperty(HttpHeaders.AUTHORIZATION, requestAuthorizer.getAuthorization());
+            } catch(IllegalStateException exception) {
+                // the token refresh has failed, which is reported as the failure to open the source
+                throw new HttpDataSourceException("Unable to authorize the request to " + dataSpec.uri.toString(), new IOException(exception), dataSpec, HttpDataSourceException.TYPE_OPEN);
+            }
         }
 
         return super.open(dataSpec);
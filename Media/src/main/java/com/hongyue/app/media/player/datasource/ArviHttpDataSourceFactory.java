@@ -27,6 +27,9 @@ import com.hongyue.app.media.util.misc.Preconditions;
 /**
  * An implementation of the {@link HttpDataSource.Factory} with the support for the
  * Request Authorization using a dedicated {@link RequestAuthorizer}.
+ * <br>
+ * By default creates the connection-reusing {@link ArviKeepAliveHttpDataSource}s
+ * (see {@link #setConnectionReuseEnabled(boolean)}).
  */
 public class ArviHttpDataSourceFactory extends HttpDataSource.BaseFactory {
 
@@ -41,6 +44,9 @@ public class ArviHttpDataSourceFactory extends HttpDataSource.BaseFactory {
 
     private int connectTimeoutMillis;
     private int readTimeoutMillis;
+    private int readBufferSize;
+
+    private boolean isConnectionReuseEnabled;
 
     private RequestAuthorizer requestAuthorizer;
 
@@ -104,6 +110,8 @@ public class ArviHttpDataSourceFactory extends HttpDataSource.BaseFactory {
         this.connectTimeoutMillis = connectTimeoutMillis;
         this.readTimeoutMillis = readTimeoutMillis;
         this.allowCrossProtocolRedirects = allowCrossProtocolRedirects;
+        this.readBufferSize = ArviKeepAliveHttpDataSource.DEFAULT_READ_BUFFER_SIZE;
+        this.isConnectionReuseEnabled = true;
         this.requestProperties = new HttpDataSource.RequestProperties();
     }
 
@@ -167,26 +175,76 @@ public class ArviHttpDataSourceFactory extends HttpDataSource.BaseFactory {
 
 
 
+    /**
+     * Sets whether the Data Sources created by this factory should reuse the keep-alive connections
+     * (and read the data through a reusable read-ahead buffer) across the sequential requests.
+     * (See {@link ArviKeepAliveHttpDataSource})
+     *
+     * @param isConnectionReuseEnabled
+     */
+    public final void setConnectionReuseEnabled(boolean isConnectionReuseEnabled) {
+        this.isConnectionReuseEnabled = isConnectionReuseEnabled;
+    }
+
+
+
+
+    /**
+     * Sets the size (In Bytes) of the read-ahead buffer of the connection-reusing Data Sources created by this factory.
+     *
+     * @param readBufferSize
+     */
+    public final void setReadBufferSize(int readBufferSize) {
+        Preconditions.isTrue("The Read Buffer Size must be positive.", (readBufferSize > 0));
+
+        this.readBufferSize = readBufferSize;
+    }
+
+
+
+
     @Override
-    protected DefaultHttpDataSource createDataSourceInternal(HttpDataSource.RequestProperties defaultRequestProperties) {
+    protected HttpDataSource createDataSourceInternal(HttpDataSource.RequestProperties defaultRequestProperties) {
         final HttpDataSource.RequestProperties finalRequestProperties = new HttpDataSource.RequestProperties();
         finalRequestProperties.set(this.requestProperties.getSnapshot());
         finalRequestProperties.set(defaultRequestProperties.getSnapshot());
 
-        final DefaultHttpDataSource dataSource = new ArviHttpDataSource(
+        final HttpDataSource dataSource = (this.isConnectionReuseEnabled ? createKeepAliveDataSource(finalRequestProperties) : createDefaultDataSource(finalRequestProperties));
+
+        if(this.listener != null) {
+            dataSource.addTransferListener(this.listener);
+        }
+
+        return dataSource;
+    }
+
+
+
+
+    private HttpDataSource createKeepAliveDataSource(HttpDataSource.RequestProperties requestProperties) {
+        return new ArviKeepAliveHttpDataSource(
             this.userAgent,
             null,
             this.connectTimeoutMillis,
             this.readTimeoutMillis,
             this.allowCrossProtocolRedirects,
-            finalRequestProperties
+            requestProperties,
+            this.readBufferSize
         ).setRequestAuthorizer(this.requestAuthorizer);
+    }
 
-        if(this.listener != null) {
-            dataSource.addTransferListener(this.listener);
-        }
 
-        return dataSource;
+
+
+    private HttpDataSource createDefaultDataSource(HttpDataSource.RequestProperties requestProperties) {
+        return new ArviHttpDataSource(
+            this.userAgent,
+            null,
+            this.connectTimeoutMillis,
+            this.readTimeoutMillis,
+            this.allowCrossProtocolRedirects,
+            requestProperties
+        ).setRequestAuthorizer(this.requestAuthorizer);
     }
 
 
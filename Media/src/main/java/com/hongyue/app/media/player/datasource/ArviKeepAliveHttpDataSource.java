@@ -0,0 +1,631 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.datasource;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BaseDataSource;
+import com.google.android.exoplayer2.upstream.DataSourceException;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.util.Predicate;
+import com.hongyue.app.media.player.util.HttpHeaders;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * An {@link HttpDataSource} tuned for the sequential range requests (media chunks) to the same hosts.
+ * <br>
+ * Unlike the {@link com.google.android.exoplayer2.upstream.DefaultHttpDataSource}, which disconnects every
+ * {@link HttpURLConnection} upon close (and thus kills the underlying socket), this one hands the fully consumed
+ * connections back to the platform's per-host keep-alive connection pool (the small response remainders get drained
+ * to make that possible), so the subsequent requests skip the TCP and TLS handshakes.
+ * <br>
+ * The response data is read through a large buffer, which is reused across the requests, so that the small
+ * reads performed by the extractors do not translate into the small socket reads.
+ * <br>
+ * Supports the Request Authorization using a dedicated {@link RequestAuthorizer}.
+ */
+public class ArviKeepAliveHttpDataSource extends BaseDataSource implements HttpDataSource {
+
+
+    /**
+     * The default size of the read-ahead buffer. (64KB in Bytes)
+     */
+    public static final int DEFAULT_READ_BUFFER_SIZE = (64 * 1024);
+
+    // the remainders of up to this size are drained on close (to keep the connection alive), the bigger ones are dropped
+    private static final long MAX_DRAIN_BYTES = (32 * 1024);
+
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/\\d+$");
+
+    private final String userAgent;
+
+    @Nullable
+    private final Predicate<String> contentTypePredicate;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private final boolean allowCrossProtocolRedirects;
+
+    @Nullable
+    private final RequestProperties defaultRequestProperties;
+    private final RequestProperties requestProperties;
+
+    private final byte[] readBuffer;
+
+    @Nullable
+    private RequestAuthorizer requestAuthorizer;
+
+    @Nullable
+    private DataSpec dataSpec;
+
+    @Nullable
+    private HttpURLConnection connection;
+
+    @Nullable
+    private InputStream inputStream;
+
+    private boolean isOpened;
+
+    private int responseCode;
+
+    private int readBufferPosition;
+    private int readBufferLimit;
+
+    private long bytesToSkip;
+    private long bytesToRead;
+    private long bytesRead;
+
+    private long responseLength;
+    private long responseBytesRead;
+
+
+
+
+    public ArviKeepAliveHttpDataSource(@NonNull String userAgent,
+                                       @Nullable Predicate<String> contentTypePredicate,
+                                       int connectTimeoutMillis,
+                                       int readTimeoutMillis,
+                                       boolean allowCrossProtocolRedirects,
+                                       @Nullable RequestProperties defaultRequestProperties) {
+        this(
+            userAgent,
+            contentTypePredicate,
+            connectTimeoutMillis,
+            readTimeoutMillis,
+            allowCrossProtocolRedirects,
+            defaultRequestProperties,
+            DEFAULT_READ_BUFFER_SIZE
+        );
+    }
+
+
+
+
+    public ArviKeepAliveHttpDataSource(@NonNull String userAgent,
+                                       @Nullable Predicate<String> contentTypePredicate,
+                                       int connectTimeoutMillis,
+                                       int readTimeoutMillis,
+                                       boolean allowCrossProtocolRedirects,
+                                       @Nullable RequestProperties defaultRequestProperties,
+                                       int readBufferSize) {
+        super(true);
+
+        Preconditions.nonEmpty(userAgent);
+        Preconditions.isTrue("The Read Buffer Size must be positive.", (readBufferSize > 0));
+
+        this.userAgent = userAgent;
+        this.contentTypePredicate = contentTypePredicate;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.allowCrossProtocolRedirects = allowCrossProtocolRedirects;
+        this.defaultRequestProperties = defaultRequestProperties;
+        this.requestProperties = new RequestProperties();
+        this.readBuffer = new byte[readBufferSize];
+    }
+
+
+
+
+    public final ArviKeepAliveHttpDataSource setRequestAuthorizer(@Nullable RequestAuthorizer requestAuthorizer) {
+        this.requestAuthorizer = requestAuthorizer;
+        return this;
+    }
+
+
+
+
+    @Override
+    public final void setRequestProperty(String name, String value) {
+        Preconditions.nonNull(name);
+        Preconditions.nonNull(value);
+
+        this.requestProperties.set(name, value);
+    }
+
+
+
+
+    @Override
+    public final void clearRequestProperty(String name) {
+        Preconditions.nonNull(name);
+
+        this.requestProperties.remove(name);
+    }
+
+
+
+
+    @Override
+    public final void clearAllRequestProperties() {
+        this.requestProperties.clear();
+    }
+
+
+
+
+    @Override
+    public final long open(DataSpec dataSpec) throws HttpDataSourceException {
+        if(this.requestAuthorizer != null) {
+            try {
+                setRequestProperty(HttpHeaders.AUTHORIZATION, this.requestAuthorizer.getAuthorization());
+            } catch(IllegalStateException exception) {
+                // the token refresh has failed, which is reported as the failure to open the source
+                throw new HttpDataSourceException("Unable to authorize the request to " + dataSpec.uri.toString(), new IOException(exception), dataSpec, HttpDataSourceException.TYPE_OPEN);
+            }
+        }
+
+        this.dataSpec = dataSpec;
+        this.bytesRead = 0;
+        this.bytesToSkip = 0;
+        this.responseBytesRead = 0;
+        this.readBufferPosition = 0;
+        this.readBufferLimit = 0;
+
+        transferInitializing(dataSpec);
+
+        try {
+            this.connection = makeConnection(dataSpec);
+        } catch(IOException exception) {
+            throw new HttpDataSourceException("Unable to connect to " + dataSpec.uri.toString(), exception, dataSpec, HttpDataSourceException.TYPE_OPEN);
+        }
+
+        final HttpURLConnection connection = this.connection;
+        final String responseMessage;
+
+        try {
+            this.responseCode = connection.getResponseCode();
+            responseMessage = connection.getResponseMessage();
+        } catch(IOException exception) {
+            closeConnection(false);
+            throw new HttpDataSourceException("Unable to connect to " + dataSpec.uri.toString(), exception, dataSpec, HttpDataSourceException.TYPE_OPEN);
+        }
+
+        if((this.responseCode < 200) || (this.responseCode > 299)) {
+            final Map<String, List<String>> headers = connection.getHeaderFields();
+            closeConnection(false);
+
+            final InvalidResponseCodeException exception = new InvalidResponseCodeException(this.responseCode, responseMessage, headers, dataSpec);
+
+            if(this.responseCode == 416) {
+                exception.initCause(new DataSourceException(DataSourceException.POSITION_OUT_OF_RANGE));
+            }
+
+            throw exception;
+        }
+
+        final String contentType = connection.getContentType();
+
+        if((this.contentTypePredicate != null) && !this.contentTypePredicate.evaluate(contentType)) {
+            closeConnection(false);
+            throw new InvalidContentTypeException(contentType, dataSpec);
+        }
+
+        // the server might ignore the range request and respond with the whole resource
+        this.bytesToSkip = (((this.responseCode == 200) && (dataSpec.position != 0)) ? dataSpec.position : 0);
+
+        if(!dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP)) {
+            this.responseLength = getContentLength(connection);
+
+            if(dataSpec.length != C.LENGTH_UNSET) {
+                this.bytesToRead = dataSpec.length;
+            } else {
+                this.bytesToRead = ((this.responseLength != C.LENGTH_UNSET) ? (this.responseLength - this.bytesToSkip) : C.LENGTH_UNSET);
+            }
+        } else {
+            // the content length refers to the compressed data, so the uncompressed length is unknown
+            this.responseLength = C.LENGTH_UNSET;
+            this.bytesToRead = dataSpec.length;
+        }
+
+        try {
+            this.inputStream = connection.getInputStream();
+        } catch(IOException exception) {
+            closeConnection(false);
+            throw new HttpDataSourceException(exception, dataSpec, HttpDataSourceException.TYPE_OPEN);
+        }
+
+        this.isOpened = true;
+        transferStarted(dataSpec);
+
+        return this.bytesToRead;
+    }
+
+
+
+
+    private HttpURLConnection makeConnection(DataSpec dataSpec) throws IOException {
+        URL url = new URL(dataSpec.uri.toString());
+        int redirectCount = 0;
+        HttpURLConnection connection;
+        int responseCode;
+
+        // the same-protocol redirects are followed by the HttpURLConnection itself,
+        // while the cross-protocol ones have to be followed manually (if allowed)
+        while(true) {
+            connection = openConnection(url, dataSpec);
+            responseCode = connection.getResponseCode();
+
+            if(!this.allowCrossProtocolRedirects || !isRedirect(responseCode) || (++redirectCount > 20)) {
+                return connection;
+            }
+
+            final String location = connection.getHeaderField("Location");
+            closeConnectionQuietly(connection, false);
+
+            if(location == null) {
+                throw new ProtocolException("Null location redirect");
+            }
+
+            url = new URL(url, location);
+
+            if(!"https".equals(url.getProtocol()) && !"http".equals(url.getProtocol())) {
+                throw new ProtocolException("Unsupported protocol redirect: " + url.getProtocol());
+            }
+        }
+    }
+
+
+
+
+    private HttpURLConnection openConnection(URL url, DataSpec dataSpec) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(this.connectTimeoutMillis);
+        connection.setReadTimeout(this.readTimeoutMillis);
+        connection.setInstanceFollowRedirects(true);
+        connection.setDoOutput(dataSpec.httpBody != null);
+        connection.setRequestMethod(dataSpec.getHttpMethodString());
+
+        if(this.defaultRequestProperties != null) {
+            for(Map.Entry<String, String> property : this.defaultRequestProperties.getSnapshot().entrySet()) {
+                connection.setRequestProperty(property.getKey(), property.getValue());
+            }
+        }
+
+        for(Map.Entry<String, String> property : this.requestProperties.getSnapshot().entrySet()) {
+            connection.setRequestProperty(property.getKey(), property.getValue());
+        }
+
+        if((dataSpec.absoluteStreamPosition != 0) || (dataSpec.length != C.LENGTH_UNSET)) {
+            String rangeRequest = ("bytes=" + dataSpec.absoluteStreamPosition + "-");
+
+            if(dataSpec.length != C.LENGTH_UNSET) {
+                rangeRequest += ((dataSpec.absoluteStreamPosition + dataSpec.length) - 1);
+            }
+
+            connection.setRequestProperty("Range", rangeRequest);
+        }
+
+        connection.setRequestProperty("User-Agent", this.userAgent);
+
+        if(!dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP)) {
+            connection.setRequestProperty("Accept-Encoding", "identity");
+        }
+
+        if(dataSpec.httpBody != null) {
+            connection.setFixedLengthStreamingMode(dataSpec.httpBody.length);
+
+            try(OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(dataSpec.httpBody);
+            }
+        } else {
+            connection.connect();
+        }
+
+        return connection;
+    }
+
+
+
+
+    @Override
+    public final int read(byte[] buffer, int offset, int readLength) throws HttpDataSourceException {
+        try {
+            skipInternal();
+            return readInternal(buffer, offset, readLength);
+        } catch(IOException exception) {
+            throw new HttpDataSourceException(exception, this.dataSpec, HttpDataSourceException.TYPE_READ);
+        }
+    }
+
+
+
+
+    private void skipInternal() throws IOException {
+        int readCount;
+
+        while(this.bytesToSkip > 0) {
+            readCount = fillReadBuffer((int) Math.min(this.bytesToSkip, this.readBuffer.length));
+
+            if(readCount == C.RESULT_END_OF_INPUT) {
+                throw new EOFException();
+            }
+
+            this.bytesToSkip -= readCount;
+            this.readBufferPosition = this.readBufferLimit;
+            bytesTransferred(readCount);
+        }
+    }
+
+
+
+
+    private int readInternal(byte[] buffer, int offset, int readLength) throws IOException {
+        if(readLength == 0) {
+            return 0;
+        }
+
+        long bytesRemaining = C.LENGTH_UNSET;
+
+        if(this.bytesToRead != C.LENGTH_UNSET) {
+            bytesRemaining = (this.bytesToRead - this.bytesRead);
+
+            if(bytesRemaining == 0) {
+                return C.RESULT_END_OF_INPUT;
+            }
+
+            readLength = (int) Math.min(readLength, bytesRemaining);
+        }
+
+        // serving the data from the read-ahead buffer, refilling it when exhausted
+        if(this.readBufferPosition == this.readBufferLimit) {
+            final int fillLength = ((bytesRemaining != C.LENGTH_UNSET) ? (int) Math.min(this.readBuffer.length, bytesRemaining) : this.readBuffer.length);
+
+            if(fillReadBuffer(fillLength) == C.RESULT_END_OF_INPUT) {
+                if(bytesRemaining != C.LENGTH_UNSET) {
+                    // the server has closed the connection earlier than expected
+                    throw new EOFException();
+                }
+
+                return C.RESULT_END_OF_INPUT;
+            }
+        }
+
+        final int readCount = Math.min(readLength, (this.readBufferLimit - this.readBufferPosition));
+
+        System.arraycopy(this.readBuffer, this.readBufferPosition, buffer, offset, readCount);
+
+        this.readBufferPosition += readCount;
+        this.bytesRead += readCount;
+
+        bytesTransferred(readCount);
+
+        return readCount;
+    }
+
+
+
+
+    private int fillReadBuffer(int length) throws IOException {
+        if(Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+
+        final int readCount = this.inputStream.read(this.readBuffer, 0, length);
+
+        if(readCount == -1) {
+            return C.RESULT_END_OF_INPUT;
+        }
+
+        this.readBufferPosition = 0;
+        this.readBufferLimit = readCount;
+        this.responseBytesRead += readCount;
+
+        return readCount;
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final Uri getUri() {
+        return ((this.connection != null) ? Uri.parse(this.connection.getURL().toString()) : null);
+    }
+
+
+
+
+    @Override
+    public final Map<String, List<String>> getResponseHeaders() {
+        return ((this.connection != null) ? this.connection.getHeaderFields() : Collections.emptyMap());
+    }
+
+
+
+
+    /**
+     * Retrieves the response code of the currently opened connection.
+     *
+     * @return the response code, or -1 if there's no opened connection
+     */
+    public final int getResponseCode() {
+        return (((this.connection != null) && (this.responseCode > 0)) ? this.responseCode : -1);
+    }
+
+
+
+
+    @Override
+    public final void close() throws HttpDataSourceException {
+        try {
+            if(this.inputStream != null) {
+                closeConnection(canBeReused());
+            } else {
+                closeConnection(false);
+            }
+        } finally {
+            this.inputStream = null;
+            this.dataSpec = null;
+            this.readBufferPosition = 0;
+            this.readBufferLimit = 0;
+
+            if(this.isOpened) {
+                this.isOpened = false;
+                transferEnded();
+            }
+        }
+    }
+
+
+
+
+    private boolean canBeReused() {
+        // the connection can only go back to the pool once its response body has been fully consumed
+        // (which might extend past the requested range, e.g. if the server ignores the range request)
+        if((this.responseLength == C.LENGTH_UNSET) || (this.bytesToSkip > 0)) {
+            return false;
+        }
+
+        final long bytesRemaining = (this.responseLength - this.responseBytesRead);
+
+        if(bytesRemaining > MAX_DRAIN_BYTES) {
+            return false;
+        }
+
+        try {
+            long drainedBytes = 0;
+            int readCount;
+
+            while((drainedBytes < bytesRemaining)
+                    && ((readCount = this.inputStream.read(this.readBuffer, 0, this.readBuffer.length)) != -1)) {
+                drainedBytes += readCount;
+            }
+
+            return true;
+        } catch(IOException exception) {
+            return false;
+        }
+    }
+
+
+
+
+    private void closeConnection(boolean keepAlive) {
+        if(this.connection != null) {
+            closeConnectionQuietly(this.connection, keepAlive);
+            this.connection = null;
+        }
+    }
+
+
+
+
+    private static void closeConnectionQuietly(HttpURLConnection connection, boolean keepAlive) {
+        try {
+            if(keepAlive) {
+                // closing the stream (without disconnecting) returns the connection to the keep-alive pool
+                connection.getInputStream().close();
+            } else {
+                connection.disconnect();
+            }
+        } catch(Exception exception) {
+            connection.disconnect();
+        }
+    }
+
+
+
+
+    private static boolean isRedirect(int responseCode) {
+        return ((responseCode == HttpURLConnection.HTTP_MULT_CHOICE)
+            || (responseCode == HttpURLConnection.HTTP_MOVED_PERM)
+            || (responseCode == HttpURLConnection.HTTP_MOVED_TEMP)
+            || (responseCode == HttpURLConnection.HTTP_SEE_OTHER)
+            || (responseCode == 307)
+            || (responseCode == 308));
+    }
+
+
+
+
+    private static long getContentLength(HttpURLConnection connection) {
+        long contentLength = C.LENGTH_UNSET;
+
+        final String contentLengthHeader = connection.getHeaderField("Content-Length");
+
+        if((contentLengthHeader != null) && !contentLengthHeader.isEmpty()) {
+            try {
+                contentLength = Long.parseLong(contentLengthHeader);
+            } catch(NumberFormatException ignored) {
+                // the header is malformed, so it's ignored
+            }
+        }
+
+        final String contentRangeHeader = connection.getHeaderField("Content-Range");
+
+        if((contentRangeHeader != null) && !contentRangeHeader.isEmpty()) {
+            final Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRangeHeader);
+
+            if(matcher.find()) {
+                try {
+                    final long contentRangeLength = ((Long.parseLong(matcher.group(2)) - Long.parseLong(matcher.group(1))) + 1);
+
+                    // the Content-Range is considered to be the more reliable one
+                    contentLength = ((contentLength < 0) ? contentRangeLength : Math.max(contentLength, contentRangeLength));
+                } catch(NumberFormatException ignored) {
+                    // the header is malformed, so it's ignored
+                }
+            }
+        }
+
+        return contentLength;
+    }
+
+
+
+
+}
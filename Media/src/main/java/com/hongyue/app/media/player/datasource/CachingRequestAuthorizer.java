@@ -0,0 +1,325 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.datasource;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hongyue.app.media.util.misc.ExecutorUtils;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * A caching decorator of the Authorization Token source, which makes the {@link RequestAuthorizer#getAuthorization()}
+ * calls (performed upon the opening of every Data Source) cheap.
+ * <br>
+ * The fetched token is held along with its expiry time, and gets refreshed on a background thread
+ * once it's about to expire (see {@link Builder#setRefreshMargin(long)}), while the current one is still being served.
+ * The callers only block when there's no valid token at all, in which case all of them wait for
+ * the same (single) in-flight refresh.
+ */
+public final class CachingRequestAuthorizer implements RequestAuthorizer {
+
+
+    /**
+     * The default time (in milliseconds) before the expiry of the token, starting from which the token gets refreshed. (1 minute)
+     */
+    public static final long DEFAULT_REFRESH_MARGIN = 60_000L;
+
+    private static volatile ExecutorService sRefreshExecutor;
+
+    private final AuthorizationProvider authorizationProvider;
+
+    private final long refreshMargin;
+
+    private final Object lock;
+
+    @Nullable
+    private volatile Authorization authorization;
+
+    @Nullable
+    private FutureTask<Authorization> refreshTask;
+
+
+
+
+    private CachingRequestAuthorizer(Builder builder) {
+        this.authorizationProvider = builder.authorizationProvider;
+        this.refreshMargin = builder.refreshMargin;
+        this.lock = new Object();
+    }
+
+
+
+
+    private static ExecutorService getRefreshExecutor() {
+        if(sRefreshExecutor == null) {
+            synchronized(CachingRequestAuthorizer.class) {
+                if(sRefreshExecutor == null) {
+                    sRefreshExecutor = ExecutorUtils.newBackgroundExecutor("AuthorizationRefresher", 1);
+                }
+            }
+        }
+
+        return sRefreshExecutor;
+    }
+
+
+
+
+    @NonNull
+    @Override
+    public final String getAuthorization() {
+        final Authorization authorization = this.authorization;
+        final long currentTime = System.currentTimeMillis();
+
+        if((authorization != null) && !authorization.isExpired(currentTime)) {
+            // serving the current token, while refreshing the soon-to-expire one in the background
+            if(authorization.isExpired(currentTime + this.refreshMargin)) {
+                refresh();
+            }
+
+            return authorization.getValue();
+        }
+
+        return awaitRefresh(refresh());
+    }
+
+
+
+
+    /**
+     * Starts the refresh of the token in the background (unless there's one in-flight already).
+     * Can be used to warm the token up before the first request.
+     *
+     * @return the in-flight refresh task
+     */
+    @NonNull
+    public final FutureTask<Authorization> refresh() {
+        synchronized(this.lock) {
+            if(this.refreshTask == null) {
+                final FutureTask<Authorization> refreshTask = new FutureTask<>(this::fetchAuthorization);
+
+                this.refreshTask = refreshTask;
+
+                getRefreshExecutor().execute(refreshTask);
+            }
+
+            return this.refreshTask;
+        }
+    }
+
+
+
+
+    /**
+     * Drops the cached token (e.g. after it's been rejected by the server),
+     * so that the next request waits for the fresh one.
+     */
+    public final void invalidate() {
+        this.authorization = null;
+    }
+
+
+
+
+    private Authorization fetchAuthorization() {
+        try {
+            final Authorization authorization = Preconditions.checkNonNull(this.authorizationProvider.fetchAuthorization());
+
+            this.authorization = authorization;
+
+            return authorization;
+        } finally {
+            synchronized(this.lock) {
+                this.refreshTask = null;
+            }
+        }
+    }
+
+
+
+
+    private static String awaitRefresh(FutureTask<Authorization> refreshTask) {
+        try {
+            return refreshTask.get().getValue();
+        } catch(InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The Authorization refresh has been interrupted.", exception);
+        } catch(ExecutionException exception) {
+            throw new IllegalStateException("Failed to refresh the Authorization.", exception.getCause());
+        }
+    }
+
+
+
+
+    /**
+     * A source of the Authorization Tokens, which is able to fetch the fresh token along with its expiry time.
+     * (Called on a background thread)
+     */
+    public interface AuthorizationProvider {
+
+        /**
+         * Fetches the fresh Authorization Token.
+         *
+         * @return the fetched token along with its expiry time
+         */
+        @NonNull
+        Authorization fetchAuthorization();
+
+    }
+
+
+
+
+    /**
+     * An Authorization Token along with its expiry time.
+     */
+    public static final class Authorization {
+
+
+        private final String value;
+
+        private final long expiryTime;
+
+
+
+
+        /**
+         * @param value the Authorization Token
+         * @param expiryTime the time (in milliseconds since the epoch) the token expires at
+         */
+        public Authorization(@NonNull String value, long expiryTime) {
+            this.value = Preconditions.checkNonNull(value);
+            this.expiryTime = expiryTime;
+        }
+
+
+
+
+        /**
+         * Creates the token, which expires after the specified time.
+         *
+         * @param value the Authorization Token
+         * @param timeToLive the lifetime of the token (in milliseconds)
+         * @return the created token
+         */
+        @NonNull
+        public static Authorization withTimeToLive(@NonNull String value, long timeToLive) {
+            return new Authorization(value, (System.currentTimeMillis() + timeToLive));
+        }
+
+
+
+
+        final boolean isExpired(long time) {
+            return (time >= this.expiryTime);
+        }
+
+
+
+
+        @NonNull
+        public final String getValue() {
+            return this.value;
+        }
+
+
+
+
+        public final long getExpiryTime() {
+            return this.expiryTime;
+        }
+
+
+
+
+    }
+
+
+
+
+    public static final class Builder {
+
+
+        private final AuthorizationProvider authorizationProvider;
+
+        private long refreshMargin;
+
+
+
+
+        /**
+         * @param authorizationProvider the source of the fresh tokens
+         */
+        public Builder(@NonNull AuthorizationProvider authorizationProvider) {
+            this.authorizationProvider = Preconditions.checkNonNull(authorizationProvider);
+            this.refreshMargin = DEFAULT_REFRESH_MARGIN;
+        }
+
+
+
+
+        /**
+         * Wraps the plain {@link RequestAuthorizer}, the tokens of which are considered to be valid for the specified time.
+         *
+         * @param requestAuthorizer the source of the fresh tokens
+         * @param timeToLive the lifetime of the tokens (in milliseconds)
+         */
+        public Builder(@NonNull RequestAuthorizer requestAuthorizer, long timeToLive) {
+            this(() -> Authorization.withTimeToLive(requestAuthorizer.getAuthorization(), timeToLive));
+
+            Preconditions.nonNull(requestAuthorizer);
+            Preconditions.isTrue("The Time To Live must be positive.", (timeToLive > 0));
+        }
+
+
+
+
+        /**
+         * Sets the time (in milliseconds) before the expiry of the token, starting from which
+         * the token gets refreshed in the background. (Defaults to {@link #DEFAULT_REFRESH_MARGIN})
+         */
+        public Builder setRefreshMargin(long refreshMargin) {
+            Preconditions.isTrue("The Refresh Margin cannot be negative.", (refreshMargin >= 0));
+
+            this.refreshMargin = refreshMargin;
+            return this;
+        }
+
+
+
+
+        @NonNull
+        public CachingRequestAuthorizer build() {
+            return new CachingRequestAuthorizer(this);
+        }
+
+
+
+
+    }
+
+
+
+
+}
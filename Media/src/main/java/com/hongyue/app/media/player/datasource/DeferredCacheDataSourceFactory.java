@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.datasource;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+/**
+ * An implementation of the {@link DataSource.Factory} which creates the {@link CacheDataSource}s
+ * once the asynchronously initialized {@link Cache} becomes ready, and the plain upstream {@link DataSource}s until then,
+ * so that the playback never has to wait for the cache initialization.
+ */
+public final class DeferredCacheDataSourceFactory implements DataSource.Factory {
+
+
+    private final Future<Cache> cacheFuture;
+
+    private final DataSource.Factory upstreamFactory;
+
+    @CacheDataSource.Flags
+    private final int flags;
+
+    private volatile DataSource.Factory cacheDataSourceFactory;
+
+    private volatile boolean isCacheUnavailable;
+
+
+
+
+    /**
+     * @param cacheFuture the future of the cache to be used once initialized
+     * @param upstreamFactory the factory of the upstream data sources
+     * @param flags the {@link CacheDataSource} flags
+     */
+    public DeferredCacheDataSourceFactory(@NonNull Future<Cache> cacheFuture,
+                                          @NonNull DataSource.Factory upstreamFactory,
+                                          @CacheDataSource.Flags int flags) {
+        this.cacheFuture = Preconditions.checkNonNull(cacheFuture);
+        this.upstreamFactory = Preconditions.checkNonNull(upstreamFactory);
+        this.flags = flags;
+    }
+
+
+
+
+    @Override
+    public final DataSource createDataSource() {
+        final DataSource.Factory factory = getCacheDataSourceFactory();
+        return ((factory != null) ? factory : this.upstreamFactory).createDataSource();
+    }
+
+
+
+
+    private DataSource.Factory getCacheDataSourceFactory() {
+        if((this.cacheDataSourceFactory != null) || this.isCacheUnavailable || !this.cacheFuture.isDone()) {
+            return this.cacheDataSourceFactory;
+        }
+
+        try {
+            this.cacheDataSourceFactory = new CacheDataSourceFactory(
+                this.cacheFuture.get(),
+                this.upstreamFactory,
+                this.flags
+            );
+        } catch(InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException exception) {
+            // the playback keeps going uncached if the cache could not be initialized
+            this.isCacheUnavailable = true;
+        }
+
+        return this.cacheDataSourceFactory;
+    }
+
+
+
+
+    /**
+     * Determines whether the {@link Cache} has been initialized and is being used.
+     */
+    public final boolean isCacheReady() {
+        return (getCacheDataSourceFactory() != null);
+    }
+
+
+
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.datasource;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.hongyue.app.media.util.cache.ManifestCache;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A {@link DataSource} which serves the adaptive stream manifests from the in-memory {@link ManifestCache}
+ * (if available), and caches the ones it has to download from the upstream {@link DataSource}.
+ * <br>
+ * The partial (ranged) and the non-GET requests are passed straight through to the upstream.
+ */
+public final class ManifestCacheDataSource implements DataSource {
+
+
+    private static final int BUFFER_SIZE = (16 * 1024);
+
+    private final DataSource upstreamDataSource;
+
+    private final ManifestCache manifestCache;
+
+    private final long ttlInMillis;
+
+    private Uri uri;
+
+    private byte[] data;
+
+    private int readPosition;
+
+    private boolean isPassthrough;
+
+
+
+
+    public ManifestCacheDataSource(@NonNull DataSource upstreamDataSource,
+                                   @NonNull ManifestCache manifestCache,
+                                   long ttlInMillis) {
+        this.upstreamDataSource = Preconditions.checkNonNull(upstreamDataSource);
+        this.manifestCache = Preconditions.checkNonNull(manifestCache);
+        this.ttlInMillis = ttlInMillis;
+    }
+
+
+
+
+    @Override
+    public final void addTransferListener(TransferListener transferListener) {
+        this.upstreamDataSource.addTransferListener(transferListener);
+    }
+
+
+
+
+    @Override
+    public final long open(DataSpec dataSpec) throws IOException {
+        this.isPassthrough = !isCacheable(dataSpec);
+
+        if(this.isPassthrough) {
+            return this.upstreamDataSource.open(dataSpec);
+        }
+
+        final String key = getKey(dataSpec);
+        final ManifestCache.Entry entry = this.manifestCache.get(key);
+
+        if(entry != null) {
+            this.uri = entry.getUri();
+            this.data = entry.getData();
+        } else {
+            this.data = download(dataSpec);
+            this.manifestCache.put(key, this.uri, this.data, this.ttlInMillis);
+        }
+
+        this.readPosition = 0;
+
+        return this.data.length;
+    }
+
+
+
+
+    private byte[] download(DataSpec dataSpec) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            this.upstreamDataSource.open(dataSpec);
+
+            int readCount;
+
+            while((readCount = this.upstreamDataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                outputStream.write(buffer, 0, readCount);
+            }
+
+            // the redirects must be preserved, as the relative urls within the manifests are resolved against them
+            final Uri upstreamUri = this.upstreamDataSource.getUri();
+            this.uri = ((upstreamUri != null) ? upstreamUri : dataSpec.uri);
+        } finally {
+            this.upstreamDataSource.close();
+        }
+
+        return outputStream.toByteArray();
+    }
+
+
+
+
+    @Override
+    public final int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if(this.isPassthrough) {
+            return this.upstreamDataSource.read(buffer, offset, readLength);
+        }
+
+        if(readLength == 0) {
+            return 0;
+        }
+
+        final int remainingLength = (this.data.length - this.readPosition);
+
+        if(remainingLength == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+
+        final int readCount = Math.min(readLength, remainingLength);
+
+        System.arraycopy(this.data, this.readPosition, buffer, offset, readCount);
+        this.readPosition += readCount;
+
+        return readCount;
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final Uri getUri() {
+        return (this.isPassthrough ? this.upstreamDataSource.getUri() : this.uri);
+    }
+
+
+
+
+    @Override
+    public final Map<String, List<String>> getResponseHeaders() {
+        return (this.isPassthrough ? this.upstreamDataSource.getResponseHeaders() : Collections.emptyMap());
+    }
+
+
+
+
+    @Override
+    public final void close() throws IOException {
+        try {
+            if(this.isPassthrough) {
+                this.upstreamDataSource.close();
+            }
+        } finally {
+            this.isPassthrough = false;
+            this.uri = null;
+            this.data = null;
+            this.readPosition = 0;
+        }
+    }
+
+
+
+
+    private static boolean isCacheable(DataSpec dataSpec) {
+        return ((dataSpec.httpMethod == DataSpec.HTTP_METHOD_GET)
+            && (dataSpec.position == 0)
+            && (dataSpec.length == C.LENGTH_UNSET));
+    }
+
+
+
+
+    private static String getKey(DataSpec dataSpec) {
+        return ((dataSpec.key != null) ? dataSpec.key : dataSpec.uri.toString());
+    }
+
+
+
+
+}
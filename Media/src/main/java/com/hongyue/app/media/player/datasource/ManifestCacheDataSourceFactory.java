@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.datasource;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.hongyue.app.media.util.cache.ManifestCache;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * An implementation of the {@link DataSource.Factory} which creates the {@link ManifestCacheDataSource}s.
+ */
+public final class ManifestCacheDataSourceFactory implements DataSource.Factory {
+
+
+    private final DataSource.Factory upstreamFactory;
+
+    private final ManifestCache manifestCache;
+
+    private final long ttlInMillis;
+
+
+
+
+    /**
+     * Constructs a ManifestCacheDataSourceFactory backed by the process-wide {@link ManifestCache}
+     * and the default TTL ({@link ManifestCache#DEFAULT_TTL_IN_MILLIS}).
+     *
+     * @param upstreamFactory the factory of the data sources to download the manifests with
+     */
+    public ManifestCacheDataSourceFactory(@NonNull DataSource.Factory upstreamFactory) {
+        this(upstreamFactory, ManifestCache.getInstance(), ManifestCache.DEFAULT_TTL_IN_MILLIS);
+    }
+
+
+
+
+    /**
+     * @param upstreamFactory the factory of the data sources to download the manifests with
+     * @param manifestCache the cache to keep the manifests in
+     * @param ttlInMillis the time to keep each manifest for (in milliseconds)
+     */
+    public ManifestCacheDataSourceFactory(@NonNull DataSource.Factory upstreamFactory,
+                                          @NonNull ManifestCache manifestCache,
+                                          long ttlInMillis) {
+        Preconditions.isTrue("The TTL cannot be negative.", (ttlInMillis >= 0L));
+
+        this.upstreamFactory = Preconditions.checkNonNull(upstreamFactory);
+        this.manifestCache = Preconditions.checkNonNull(manifestCache);
+        this.ttlInMillis = ttlInMillis;
+    }
+
+
+
+
+    @Override
+    public final ManifestCacheDataSource createDataSource() {
+        return new ManifestCacheDataSource(
+            this.upstreamFactory.createDataSource(),
+            this.manifestCache,
+            this.ttlInMillis
+        );
+    }
+
+
+
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.loadcontrol;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+
+
+/**
+ * The built-in buffering profiles of the {@link LoadControl}s.
+ * <br>
+ * Used by the {@link ProfiledLoadControl} (which switches between the "active" and the "preload" profiles),
+ * and can also be turned into a fixed {@link LoadControl} via {@link #create()}.
+ */
+public enum LoadControlProfile {
+
+
+    /**
+     * The profile of the swipeable short-video feeds.
+     * (Starts the playback as soon as the first half a second is buffered, while keeping the buffer small)
+     */
+    FAST_START_FEED(5000, 15000, 500, 1500),
+
+    /**
+     * The profile of the preloaded (not yet played) items.
+     * (Buffers merely the start of the media, just enough for the instant start)
+     */
+    PRELOAD(1000, 2000, 500, 1000),
+
+    /**
+     * The profile of the long-form playback. (Matches the defaults of the {@link DefaultLoadControl})
+     */
+    LONG_FORM(
+        DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+        DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+        DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS
+    );
+
+
+    private final int minBufferMs;
+    private final int maxBufferMs;
+    private final int bufferForPlaybackMs;
+    private final int bufferForPlaybackAfterRebufferMs;
+
+
+
+
+    LoadControlProfile(int minBufferMs,
+                       int maxBufferMs,
+                       int bufferForPlaybackMs,
+                       int bufferForPlaybackAfterRebufferMs) {
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+    }
+
+
+
+
+    /**
+     * Creates a new fixed {@link LoadControl} of this profile.
+     *
+     * @return the created {@link LoadControl}
+     */
+    @NonNull
+    public final LoadControl create() {
+        return new DefaultLoadControl.Builder()
+            .setBufferDurationsMs(
+                this.minBufferMs,
+                this.maxBufferMs,
+                this.bufferForPlaybackMs,
+                this.bufferForPlaybackAfterRebufferMs
+            )
+            .createDefaultLoadControl();
+    }
+
+
+
+
+    /**
+     * The minimum duration of the media (in millis) the player will attempt to keep buffered.
+     */
+    public final int getMinBufferMs() {
+        return this.minBufferMs;
+    }
+
+
+
+
+    /**
+     * The maximum duration of the media (in millis) the player will attempt to buffer.
+     */
+    public final int getMaxBufferMs() {
+        return this.maxBufferMs;
+    }
+
+
+
+
+    /**
+     * The duration of the media (in millis) that must be buffered for the playback to start.
+     */
+    public final int getBufferForPlaybackMs() {
+        return this.bufferForPlaybackMs;
+    }
+
+
+
+
+    /**
+     * The duration of the media (in millis) that must be buffered for the playback to resume after a rebuffer.
+     */
+    public final int getBufferForPlaybackAfterRebufferMs() {
+        return this.bufferForPlaybackAfterRebufferMs;
+    }
+
+
+
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.loadcontrol;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.android.exoplayer2.util.Util;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A {@link LoadControl} which buffers according to either the "active" or the "preload" {@link LoadControlProfile},
+ * so that the pooled players can preload merely the start of the upcoming media and switch to the full
+ * buffering budget once they become the playing ones (see {@link #setActive(boolean)}).
+ * <br>
+ * The {@link LoadControl} is fixed per ExoPlayer instance, hence there must be a dedicated instance per player.
+ * (The buffering logic mirrors the one of the {@link com.google.android.exoplayer2.DefaultLoadControl})
+ * <br>
+ * If the shared {@link PriorityTaskManager} is set, the loading gets arbitrated among the players:
+ * the "active" player registers the playback priority while it's buffering (i.e. until its buffer reaches
+ * the max duration, and again once it drops below the min one), and the "preload" players hold off
+ * their loading for the time being.
+ */
+public final class ProfiledLoadControl implements LoadControl {
+
+
+    // the number of the players currently holding the playback priority (the PriorityTaskManager does not expose it)
+    private static final AtomicInteger sPlaybackPriorityCount = new AtomicInteger();
+
+    private final DefaultAllocator allocator;
+
+    private final LoadControlProfile activeProfile;
+    private final LoadControlProfile preloadProfile;
+
+    @Nullable
+    private final PriorityTaskManager priorityTaskManager;
+
+    private volatile boolean isActive;
+
+    private boolean isPriorityRegistered;
+
+    private int targetBufferSize;
+
+    private boolean isBuffering;
+
+
+
+
+    public ProfiledLoadControl(@NonNull LoadControlProfile activeProfile, @NonNull LoadControlProfile preloadProfile) {
+        this(activeProfile, preloadProfile, null);
+    }
+
+
+
+
+    public ProfiledLoadControl(@NonNull LoadControlProfile activeProfile,
+                               @NonNull LoadControlProfile preloadProfile,
+                               @Nullable PriorityTaskManager priorityTaskManager) {
+        this.allocator = new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        this.activeProfile = Preconditions.checkNonNull(activeProfile);
+        this.preloadProfile = Preconditions.checkNonNull(preloadProfile);
+        this.priorityTaskManager = priorityTaskManager;
+        this.isActive = true;
+    }
+
+
+
+
+    /**
+     * Switches between the "active" and the "preload" profiles. (Can be called from any thread)
+     *
+     * @param isActive whether the "active" profile is to be used
+     */
+    public final void setActive(boolean isActive) {
+        this.isActive = isActive;
+
+        // the demoted player must give way to the new active one right away
+        if(!isActive) {
+            updatePriority(false);
+        }
+    }
+
+
+
+
+    /**
+     * Determines whether the "active" profile is currently used.
+     */
+    public final boolean isActive() {
+        return this.isActive;
+    }
+
+
+
+
+    /**
+     * Retrieves the currently used {@link LoadControlProfile}.
+     */
+    @NonNull
+    public final LoadControlProfile getCurrentProfile() {
+        return (this.isActive ? this.activeProfile : this.preloadProfile);
+    }
+
+
+
+
+    @Override
+    public final void onPrepared() {
+        reset(false);
+    }
+
+
+
+
+    @Override
+    public final void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+        int targetBufferSize = 0;
+
+        for(int i = 0; i < renderers.length; i++) {
+            if(trackSelections.get(i) != null) {
+                targetBufferSize += Util.getDefaultBufferSize(renderers[i].getTrackType());
+            }
+        }
+
+        this.targetBufferSize = targetBufferSize;
+        this.allocator.setTargetBufferSize(targetBufferSize);
+    }
+
+
+
+
+    @Override
+    public final void onStopped() {
+        reset(true);
+    }
+
+
+
+
+    @Override
+    public final void onReleased() {
+        reset(true);
+    }
+
+
+
+
+    @Override
+    public final Allocator getAllocator() {
+        return this.allocator;
+    }
+
+
+
+
+    @Override
+    public final long getBackBufferDurationUs() {
+        return 0;
+    }
+
+
+
+
+    @Override
+    public final boolean retainBackBufferFromKeyframe() {
+        return false;
+    }
+
+
+
+
+    @Override
+    public final boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+        final LoadControlProfile profile = getCurrentProfile();
+        final boolean isTargetBufferSizeReached = (this.allocator.getTotalBytesAllocated() >= this.targetBufferSize);
+        final long maxBufferUs = C.msToUs(profile.getMaxBufferMs());
+        long minBufferUs = C.msToUs(profile.getMinBufferMs());
+
+        if(playbackSpeed > 1) {
+            // the buffer must hold the min duration of the playout, rather than of the media
+            minBufferUs = Math.min(Util.getMediaDurationForPlayoutDuration(minBufferUs, playbackSpeed), maxBufferUs);
+        }
+
+        if(bufferedDurationUs < minBufferUs) {
+            this.isBuffering = true;
+        } else if((bufferedDurationUs >= maxBufferUs) || isTargetBufferSizeReached) {
+            this.isBuffering = false;
+        }
+
+        final boolean isActive = this.isActive;
+
+        updatePriority(isActive && this.isBuffering);
+
+        // the preloading proceeds only while none of the active players is buffering
+        if(!isActive
+                && this.isBuffering
+                && (this.priorityTaskManager != null)
+                && (sPlaybackPriorityCount.get() > 0)) {
+            return false;
+        }
+
+        return this.isBuffering;
+    }
+
+
+
+
+    @Override
+    public final boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
+        final LoadControlProfile profile = getCurrentProfile();
+        final long playoutDurationUs = Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
+        final long minBufferDurationUs = C.msToUs(rebuffering ? profile.getBufferForPlaybackAfterRebufferMs() : profile.getBufferForPlaybackMs());
+
+        return ((minBufferDurationUs <= 0) || (playoutDurationUs >= minBufferDurationUs));
+    }
+
+
+
+
+    private synchronized void updatePriority(boolean isPlaybackPriority) {
+        if((this.priorityTaskManager == null) || (this.isPriorityRegistered == isPlaybackPriority)) {
+            return;
+        }
+
+        if(isPlaybackPriority) {
+            sPlaybackPriorityCount.incrementAndGet();
+            this.priorityTaskManager.add(C.PRIORITY_PLAYBACK);
+        } else {
+            this.priorityTaskManager.remove(C.PRIORITY_PLAYBACK);
+            sPlaybackPriorityCount.decrementAndGet();
+        }
+
+        this.isPriorityRegistered = isPlaybackPriority;
+    }
+
+
+
+
+    private void reset(boolean resetAllocator) {
+        this.targetBufferSize = 0;
+        this.isBuffering = false;
+
+        updatePriority(false);
+
+        if(resetAllocator) {
+            this.allocator.reset();
+        }
+    }
+
+
+
+
+}
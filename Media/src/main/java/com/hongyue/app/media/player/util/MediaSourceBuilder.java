@@ -93,7 +93,10 @@ public interface MediaSourceBuilder {
                     return dashMediaSource;
 
                 case C.TYPE_HLS:
-                    final HlsMediaSource hlsMediaSource = new HlsMediaSource.Factory(mediaDataSourceFactory).createMediaSource(fileUri);
+                    // the playlists are loaded via the manifest data sources, so that they do not end up in the media cache
+                    final HlsMediaSource hlsMediaSource = new HlsMediaSource.Factory(
+                        dataType -> ((dataType == C.DATA_TYPE_MANIFEST) ? manifestDataSourceFactory : mediaDataSourceFactory).createDataSource()
+                    ).createMediaSource(fileUri);
 
                     addEventListenerIfNonNull(
                         hlsMediaSource,
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.EventDispatcher;
+import com.google.android.exoplayer2.util.SlidingPercentile;
+import com.google.android.exoplayer2.util.Util;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+
+/**
+ * A process-wide {@link BandwidthMeter}, which persists its latest bitrate estimate per network type
+ * (see {@link C.NetworkType}) and seeds the initial estimate with the persisted one, so that the initial
+ * renditions are chosen based on the actual network conditions rather than the hardcoded default.
+ * <br>
+ * The estimation itself mirrors the one of the {@link DefaultBandwidthMeter} (the weighted median of the
+ * recent transfer samples). The persisted estimates become available once the meter is initialized
+ * with a {@link Context} (see {@link #init(Context)}); until then the default estimate is used.
+ */
+public final class PersistentBandwidthMeter implements BandwidthMeter, TransferListener {
+
+
+    private static final String PREFERENCES_NAME = "arvi_bandwidth_estimates";
+    private static final String KEY_PREFIX_BITRATE_ESTIMATE = "bitrate_estimate_";
+
+    private static final int SLIDING_WINDOW_MAX_WEIGHT = 2000;
+    private static final int ELAPSED_MILLIS_FOR_ESTIMATE = 2000;
+    private static final int BYTES_TRANSFERRED_FOR_ESTIMATE = (512 * 1024);
+
+    // the network type lookups and the estimate writes are throttled, as the transfers are frequent
+    private static final long NETWORK_TYPE_CHECK_INTERVAL_IN_MILLIS = 5000L;
+    private static final long PERSIST_INTERVAL_IN_MILLIS = 10000L;
+
+    private static volatile PersistentBandwidthMeter sInstance;
+    private static volatile BaseMeter<PersistentBandwidthMeter, PersistentBandwidthMeter> sDefaultMeter;
+
+    private final EventDispatcher<EventListener> eventDispatcher;
+
+    @Nullable
+    private SharedPreferences preferences;
+
+    @Nullable
+    private Context context;
+
+    private SlidingPercentile slidingPercentile;
+
+    private int networkType;
+    private int streamCount;
+
+    private long sampleStartTime;
+    private long sampleBytesTransferred;
+    private long totalElapsedTime;
+    private long totalBytesTransferred;
+    private long lastNetworkTypeCheckTime;
+    private long lastPersistTime;
+
+    private long bitrateEstimate;
+
+
+
+
+    /**
+     * Retrieves the process-wide instance of the {@link PersistentBandwidthMeter}.
+     */
+    @NonNull
+    public static PersistentBandwidthMeter getInstance() {
+        if(sInstance == null) {
+            synchronized(PersistentBandwidthMeter.class) {
+                if(sInstance == null) {
+                    sInstance = new PersistentBandwidthMeter();
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+
+
+
+    /**
+     * Retrieves the process-wide {@link BaseMeter} backed by the {@link PersistentBandwidthMeter}.
+     * (Used by the {@link com.hongyue.app.media.Config}s by default)
+     */
+    @NonNull
+    public static BaseMeter<PersistentBandwidthMeter, PersistentBandwidthMeter> getDefaultMeter() {
+        if(sDefaultMeter == null) {
+            synchronized(PersistentBandwidthMeter.class) {
+                if(sDefaultMeter == null) {
+                    final PersistentBandwidthMeter bandwidthMeter = getInstance();
+                    sDefaultMeter = new BaseMeter<>(bandwidthMeter, bandwidthMeter);
+                }
+            }
+        }
+
+        return sDefaultMeter;
+    }
+
+
+
+
+    private PersistentBandwidthMeter() {
+        this.eventDispatcher = new EventDispatcher<>();
+        this.slidingPercentile = new SlidingPercentile(SLIDING_WINDOW_MAX_WEIGHT);
+        this.networkType = C.NETWORK_TYPE_UNKNOWN;
+        this.bitrateEstimate = DefaultBandwidthMeter.DEFAULT_INITIAL_BITRATE_ESTIMATE;
+    }
+
+
+
+
+    /**
+     * Initializes the meter with the {@link Context}, which enables the persistence of the estimates.
+     * The persisted estimate for the current network type gets loaded in the background.
+     * (Subsequent calls are no-op)
+     *
+     * @param context the context
+     */
+    public final void init(@NonNull Context context) {
+        Preconditions.nonNull(context);
+
+        synchronized(this) {
+            if(this.context != null) {
+                return;
+            }
+
+            this.context = context.getApplicationContext();
+        }
+
+        // a one-off read, so the shared pool is used instead of a dedicated executor
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(this::loadEstimate);
+    }
+
+
+
+
+    private void loadEstimate() {
+        final SharedPreferences preferences = this.context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        final int networkType = Util.getNetworkType(this.context);
+
+        synchronized(this) {
+            this.preferences = preferences;
+            this.lastNetworkTypeCheckTime = SystemClock.elapsedRealtime();
+
+            // the measured estimate (if any) takes precedence over the persisted one
+            if(!hasMeasuredEstimate()) {
+                switchNetworkType(networkType);
+            } else {
+                this.networkType = networkType;
+            }
+        }
+    }
+
+
+
+
+    @Override
+    public final synchronized long getBitrateEstimate() {
+        return this.bitrateEstimate;
+    }
+
+
+
+
+    @Nullable
+    @Override
+    public final TransferListener getTransferListener() {
+        return this;
+    }
+
+
+
+
+    @Override
+    public final void addEventListener(Handler eventHandler, EventListener eventListener) {
+        this.eventDispatcher.addListener(eventHandler, eventListener);
+    }
+
+
+
+
+    @Override
+    public final void removeEventListener(EventListener eventListener) {
+        this.eventDispatcher.removeListener(eventListener);
+    }
+
+
+
+
+    @Override
+    public final void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        // no-op
+    }
+
+
+
+
+    @Override
+    public final synchronized void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if(!isNetwork) {
+            return;
+        }
+
+        if(this.streamCount == 0) {
+            this.sampleStartTime = SystemClock.elapsedRealtime();
+            checkNetworkType(this.sampleStartTime);
+        }
+
+        this.streamCount++;
+    }
+
+
+
+
+    @Override
+    public final synchronized void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        if(!isNetwork) {
+            return;
+        }
+
+        this.sampleBytesTransferred += bytesTransferred;
+    }
+
+
+
+
+    @Override
+    public final synchronized void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if(!isNetwork || (this.streamCount <= 0)) {
+            return;
+        }
+
+        final long currentTime = SystemClock.elapsedRealtime();
+        final int sampleElapsedTime = (int) (currentTime - this.sampleStartTime);
+
+        this.totalElapsedTime += sampleElapsedTime;
+        this.totalBytesTransferred += this.sampleBytesTransferred;
+
+        if(sampleElapsedTime > 0) {
+            final float bitsPerSecond = ((this.sampleBytesTransferred * 8000f) / sampleElapsedTime);
+
+            this.slidingPercentile.addSample((int) Math.sqrt(this.sampleBytesTransferred), bitsPerSecond);
+
+            if(hasMeasuredEstimate()) {
+                this.bitrateEstimate = (long) this.slidingPercentile.getPercentile(0.5f);
+                persistEstimate(currentTime);
+            }
+
+            notifyBandwidthSample(sampleElapsedTime, this.sampleBytesTransferred, this.bitrateEstimate);
+
+            this.sampleStartTime = currentTime;
+            this.sampleBytesTransferred = 0;
+        }
+
+        this.streamCount--;
+    }
+
+
+
+
+    private void checkNetworkType(long currentTime) {
+        if((this.context == null) || ((currentTime - this.lastNetworkTypeCheckTime) < NETWORK_TYPE_CHECK_INTERVAL_IN_MILLIS)) {
+            return;
+        }
+
+        this.lastNetworkTypeCheckTime = currentTime;
+
+        final int networkType = Util.getNetworkType(this.context);
+
+        if(networkType != this.networkType) {
+            // the measurements of the previous network are irrelevant for the new one
+            persistEstimate(Long.MAX_VALUE);
+            switchNetworkType(networkType);
+        }
+    }
+
+
+
+
+    private void switchNetworkType(int networkType) {
+        this.networkType = networkType;
+        this.slidingPercentile = new SlidingPercentile(SLIDING_WINDOW_MAX_WEIGHT);
+        this.totalElapsedTime = 0;
+        this.totalBytesTransferred = 0;
+        this.lastPersistTime = 0;
+        this.bitrateEstimate = getPersistedEstimate(networkType);
+    }
+
+
+
+
+    private boolean hasMeasuredEstimate() {
+        return ((this.totalElapsedTime >= ELAPSED_MILLIS_FOR_ESTIMATE) || (this.totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE));
+    }
+
+
+
+
+    private long getPersistedEstimate(int networkType) {
+        if(this.preferences == null) {
+            return DefaultBandwidthMeter.DEFAULT_INITIAL_BITRATE_ESTIMATE;
+        }
+
+        return this.preferences.getLong((KEY_PREFIX_BITRATE_ESTIMATE + networkType), DefaultBandwidthMeter.DEFAULT_INITIAL_BITRATE_ESTIMATE);
+    }
+
+
+
+
+    private void persistEstimate(long currentTime) {
+        if((this.preferences == null)
+                || !hasMeasuredEstimate()
+                || ((currentTime - this.lastPersistTime) < PERSIST_INTERVAL_IN_MILLIS)) {
+            return;
+        }
+
+        this.lastPersistTime = currentTime;
+        this.preferences.edit()
+            .putLong((KEY_PREFIX_BITRATE_ESTIMATE + this.networkType), this.bitrateEstimate)
+            .apply();
+    }
+
+
+
+
+    private void notifyBandwidthSample(int elapsedTime, long bytesTransferred, long bitrateEstimate) {
+        this.eventDispatcher.dispatch(listener -> listener.onBandwidthSample(elapsedTime, bytesTransferred, bitrateEstimate));
+    }
+
+
+
+
+}
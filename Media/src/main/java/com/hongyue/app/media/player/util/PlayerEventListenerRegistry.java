@@ -26,49 +26,91 @@ import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.hongyue.app.media.player.Player;
 import com.hongyue.app.media.util.misc.Preconditions;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 
 /**
  * A manager for the {@link Player.EventListener}s. Used to observe the {@link com.google.android.exoplayer2.Player.EventListener} events
  * and propagate them to all the subscribed {@link Player.EventListener}s.
+ * <br>
+ * The listeners are held in a copy-on-write array, so the events are dispatched over an immutable snapshot
+ * by index (without any allocations), while the listeners can be safely added/removed during the dispatch.
  */
 public final class PlayerEventListenerRegistry implements com.google.android.exoplayer2.Player.EventListener {
 
 
-    private final Set<Player.EventListener> mEventListeners;
+    private static final Player.EventListener[] NO_LISTENERS = new Player.EventListener[0];
+
+    private volatile Player.EventListener[] mEventListeners;
 
 
 
 
     public PlayerEventListenerRegistry() {
-        mEventListeners = new HashSet<>();
+        mEventListeners = NO_LISTENERS;
     }
 
 
 
 
-    public final void addListener(@NonNull Player.EventListener eventListener) {
+    public final synchronized void addListener(@NonNull Player.EventListener eventListener) {
         Preconditions.nonNull(eventListener);
 
-        mEventListeners.add(eventListener);
+        final Player.EventListener[] eventListeners = mEventListeners;
+
+        if(indexOf(eventListeners, eventListener) != -1) {
+            return;
+        }
+
+        final Player.EventListener[] newEventListeners = Arrays.copyOf(eventListeners, (eventListeners.length + 1));
+        newEventListeners[eventListeners.length] = eventListener;
+
+        mEventListeners = newEventListeners;
     }
 
 
 
 
-    public final void removeListener(@NonNull Player.EventListener eventListener) {
+    public final synchronized void removeListener(@NonNull Player.EventListener eventListener) {
         Preconditions.nonNull(eventListener);
 
-        mEventListeners.remove(eventListener);
+        final Player.EventListener[] eventListeners = mEventListeners;
+        final int index = indexOf(eventListeners, eventListener);
+
+        if(index == -1) {
+            return;
+        }
+
+        if(eventListeners.length == 1) {
+            mEventListeners = NO_LISTENERS;
+            return;
+        }
+
+        final Player.EventListener[] newEventListeners = new Player.EventListener[eventListeners.length - 1];
+        System.arraycopy(eventListeners, 0, newEventListeners, 0, index);
+        System.arraycopy(eventListeners, (index + 1), newEventListeners, index, (eventListeners.length - index - 1));
+
+        mEventListeners = newEventListeners;
     }
 
 
 
 
-    public final void removeAllListeners() {
-        mEventListeners.clear();
+    public final synchronized void removeAllListeners() {
+        mEventListeners = NO_LISTENERS;
+    }
+
+
+
+
+    private static int indexOf(Player.EventListener[] eventListeners, Player.EventListener eventListener) {
+        for(int i = 0; i < eventListeners.length; i++) {
+            if(eventListeners[i].equals(eventListener)) {
+                return i;
+            }
+        }
+
+        return -1;
     }
 
 
@@ -84,8 +126,10 @@ public final class PlayerEventListenerRegistry implements com.google.android.exo
 
     @Override
     public final void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
-        for(Player.EventListener eventListener : mEventListeners) {
-            eventListener.onTracksChanged(trackGroups, trackSelections);
+        final Player.EventListener[] eventListeners = mEventListeners;
+
+        for(int i = 0; i < eventListeners.length; i++) {
+            eventListeners[i].onTracksChanged(trackGroups, trackSelections);
         }
     }
 
@@ -94,8 +138,10 @@ public final class PlayerEventListenerRegistry implements com.google.android.exo
 
     @Override
     public final void onLoadingChanged(boolean isLoading) {
-        for(Player.EventListener eventListener : mEventListeners) {
-            eventListener.onLoadingChanged(isLoading);
+        final Player.EventListener[] eventListeners = mEventListeners;
+
+        for(int i = 0; i < eventListeners.length; i++) {
+            eventListeners[i].onLoadingChanged(isLoading);
         }
     }
 
@@ -104,8 +150,10 @@ public final class PlayerEventListenerRegistry implements com.google.android.exo
 
     @Override
     public final void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
-        for(Player.EventListener eventListener : mEventListeners) {
-            eventListener.onPlayerStateChanged(playbackState);
+        final Player.EventListener[] eventListeners = mEventListeners;
+
+        for(int i = 0; i < eventListeners.length; i++) {
+            eventListeners[i].onPlayerStateChanged(playbackState);
         }
     }
 
@@ -130,8 +178,10 @@ public final class PlayerEventListenerRegistry implements com.google.android.exo
 
     @Override
     public final void onPlayerError(ExoPlaybackException error) {
-        for(Player.EventListener eventListener : mEventListeners) {
-            eventListener.onPlayerError(error);
+        final Player.EventListener[] eventListeners = mEventListeners;
+
+        for(int i = 0; i < eventListeners.length; i++) {
+            eventListeners[i].onPlayerError(error);
         }
     }
 
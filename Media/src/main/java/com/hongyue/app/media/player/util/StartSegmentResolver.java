@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.player.util;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.RangedUri;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.android.exoplayer2.util.Util.inferContentType;
+
+
+/**
+ * Resolves the parts of the media that the playback starts with (the {@link DataSpec}s to be prefetched).
+ * <br>
+ * For the progressive media that's simply the beginning of the file, while for the adaptive streams
+ * (HLS and DASH) the manifests are fetched and parsed in order to pick the start rendition (the same way the
+ * {@link com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection} does) and to resolve its initialization
+ * segment along with the first media segments. (The live streams are skipped, as their start segments keep rotating)
+ * <br>
+ * The resolved {@link DataSpec}s match the ones requested by the ExoPlayer chunk sources, so that the prefetched
+ * data gets picked up from the {@link com.google.android.exoplayer2.upstream.cache.Cache}.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class StartSegmentResolver {
+
+
+    // matches the default bandwidth fraction of the AdaptiveTrackSelection
+    private static final float BANDWIDTH_FRACTION = 0.7f;
+
+
+
+
+    private StartSegmentResolver() {}
+
+
+
+
+    /**
+     * Resolves the {@link DataSpec}s of the start of the specified media.
+     *
+     * @param manifestDataSource the data source to load the manifests with
+     * @param uri the media uri
+     * @param bitrateEstimate the current bandwidth estimate (in bits per second)
+     * @param segmentCount the number of the media segments to resolve (adaptive streams)
+     * @param length the number of the bytes to resolve (progressive media)
+     * @return the resolved data specs (empty if there's nothing to prefetch)
+     * @throws IOException if the manifest could not be loaded
+     */
+    @NonNull
+    public static List<DataSpec> resolve(@NonNull DataSource manifestDataSource,
+                                         @NonNull Uri uri,
+                                         long bitrateEstimate,
+                                         int segmentCount,
+                                         long length) throws IOException {
+        Preconditions.nonNull(manifestDataSource);
+        Preconditions.nonNull(uri);
+
+        switch(inferContentType(uri)) {
+
+            case C.TYPE_HLS:
+                return resolveHls(manifestDataSource, uri, bitrateEstimate, segmentCount);
+
+            case C.TYPE_DASH:
+                return resolveDash(manifestDataSource, uri, bitrateEstimate, segmentCount, length);
+
+            case C.TYPE_SS:
+                // the Smooth Streaming manifests are rare enough not to justify the prefetching
+                return Collections.emptyList();
+
+            default:
+                return Collections.singletonList(new DataSpec(uri, 0, length, null));
+
+        }
+    }
+
+
+
+
+    private static List<DataSpec> resolveHls(DataSource manifestDataSource,
+                                             Uri uri,
+                                             long bitrateEstimate,
+                                             int segmentCount) throws IOException {
+        final HlsPlaylist playlist = ParsingLoadable.load(manifestDataSource, new HlsPlaylistParser(), uri, C.DATA_TYPE_MANIFEST);
+        final HlsMediaPlaylist mediaPlaylist;
+
+        if(playlist instanceof HlsMasterPlaylist) {
+            final HlsMasterPlaylist masterPlaylist = (HlsMasterPlaylist) playlist;
+            final HlsMasterPlaylist.Variant variant = selectHlsVariant(masterPlaylist.variants, bitrateEstimate);
+
+            if(variant == null) {
+                return Collections.emptyList();
+            }
+
+            mediaPlaylist = (HlsMediaPlaylist) ParsingLoadable.load(
+                manifestDataSource,
+                new HlsPlaylistParser(masterPlaylist),
+                variant.url,
+                C.DATA_TYPE_MANIFEST
+            );
+        } else {
+            mediaPlaylist = (HlsMediaPlaylist) playlist;
+        }
+
+        if(!mediaPlaylist.hasEndTag) {
+            return Collections.emptyList();
+        }
+
+        final List<DataSpec> dataSpecs = new ArrayList<>();
+        final int count = Math.min(segmentCount, mediaPlaylist.segments.size());
+        HlsMediaPlaylist.Segment segment;
+
+        for(int i = 0; i < count; i++) {
+            segment = mediaPlaylist.segments.get(i);
+
+            // the initialization segment is shared by the subsequent segments
+            if((i == 0) && (segment.initializationSegment != null)) {
+                dataSpecs.add(createHlsDataSpec(mediaPlaylist.baseUri, segment.initializationSegment));
+            }
+
+            dataSpecs.add(createHlsDataSpec(mediaPlaylist.baseUri, segment));
+        }
+
+        return dataSpecs;
+    }
+
+
+
+
+    @Nullable
+    private static HlsMasterPlaylist.Variant selectHlsVariant(List<HlsMasterPlaylist.Variant> variants, long bitrateEstimate) {
+        HlsMasterPlaylist.Variant selectedVariant = null;
+        HlsMasterPlaylist.Variant lowestVariant = null;
+
+        for(HlsMasterPlaylist.Variant variant : variants) {
+            if(isBitrateAffordable(variant.format, bitrateEstimate)
+                    && ((selectedVariant == null) || (variant.format.bitrate > selectedVariant.format.bitrate))) {
+                selectedVariant = variant;
+            }
+
+            if((lowestVariant == null) || (variant.format.bitrate < lowestVariant.format.bitrate)) {
+                lowestVariant = variant;
+            }
+        }
+
+        return ((selectedVariant != null) ? selectedVariant : lowestVariant);
+    }
+
+
+
+
+    private static DataSpec createHlsDataSpec(String baseUri, HlsMediaPlaylist.Segment segment) {
+        return new DataSpec(
+            UriUtil.resolveToUri(baseUri, segment.url),
+            segment.byterangeOffset,
+            segment.byterangeLength,
+            null
+        );
+    }
+
+
+
+
+    private static List<DataSpec> resolveDash(DataSource manifestDataSource,
+                                              Uri uri,
+                                              long bitrateEstimate,
+                                              int segmentCount,
+                                              long length) throws IOException {
+        final DashManifest manifest = ParsingLoadable.load(manifestDataSource, new DashManifestParser(), uri, C.DATA_TYPE_MANIFEST);
+
+        if(manifest.dynamic || (manifest.getPeriodCount() == 0)) {
+            return Collections.emptyList();
+        }
+
+        final long periodDurationUs = manifest.getPeriodDurationUs(0);
+        final List<DataSpec> dataSpecs = new ArrayList<>();
+        Representation representation;
+
+        // the playback requires both the video and the audio, so the start representation of each is resolved
+        for(AdaptationSet adaptationSet : manifest.getPeriod(0).adaptationSets) {
+            if((adaptationSet.type != C.TRACK_TYPE_VIDEO) && (adaptationSet.type != C.TRACK_TYPE_AUDIO)) {
+                continue;
+            }
+
+            representation = selectDashRepresentation(adaptationSet.representations, bitrateEstimate);
+
+            if(representation != null) {
+                addDashDataSpecs(dataSpecs, representation, periodDurationUs, segmentCount, length);
+            }
+        }
+
+        return dataSpecs;
+    }
+
+
+
+
+    @Nullable
+    private static Representation selectDashRepresentation(List<Representation> representations, long bitrateEstimate) {
+        Representation selectedRepresentation = null;
+        Representation lowestRepresentation = null;
+
+        for(Representation representation : representations) {
+            if(isBitrateAffordable(representation.format, bitrateEstimate)
+                    && ((selectedRepresentation == null) || (representation.format.bitrate > selectedRepresentation.format.bitrate))) {
+                selectedRepresentation = representation;
+            }
+
+            if((lowestRepresentation == null) || (representation.format.bitrate < lowestRepresentation.format.bitrate)) {
+                lowestRepresentation = representation;
+            }
+        }
+
+        return ((selectedRepresentation != null) ? selectedRepresentation : lowestRepresentation);
+    }
+
+
+
+
+    private static void addDashDataSpecs(List<DataSpec> dataSpecs,
+                                         Representation representation,
+                                         long periodDurationUs,
+                                         int segmentCount,
+                                         long length) {
+        final String baseUrl = representation.baseUrl;
+        final String cacheKey = representation.getCacheKey();
+        final RangedUri initializationUri = representation.getInitializationUri();
+        final RangedUri indexUri = representation.getIndexUri();
+        final DashSegmentIndex segmentIndex = representation.getIndex();
+
+        if(initializationUri != null) {
+            dataSpecs.add(createDashDataSpec(baseUrl, initializationUri, cacheKey));
+        }
+
+        if(indexUri != null) {
+            dataSpecs.add(createDashDataSpec(baseUrl, indexUri, cacheKey));
+        }
+
+        // the single segment representations keep their index (sidx) within the media itself,
+        // so the beginning of the media is prefetched instead of the exact segments
+        if(segmentIndex == null) {
+            dataSpecs.add(new DataSpec(Uri.parse(baseUrl), 0, length, cacheKey));
+            return;
+        }
+
+        final long firstSegmentNum = segmentIndex.getFirstSegmentNum();
+        final int availableSegmentCount = segmentIndex.getSegmentCount(periodDurationUs);
+        final long count = ((availableSegmentCount == DashSegmentIndex.INDEX_UNBOUNDED) ? segmentCount : Math.min(segmentCount, availableSegmentCount));
+
+        for(long segmentNum = firstSegmentNum; segmentNum < (firstSegmentNum + count); segmentNum++) {
+            dataSpecs.add(createDashDataSpec(baseUrl, segmentIndex.getSegmentUrl(segmentNum), cacheKey));
+        }
+    }
+
+
+
+
+    private static DataSpec createDashDataSpec(String baseUrl, RangedUri rangedUri, @Nullable String cacheKey) {
+        return new DataSpec(
+            rangedUri.resolveUri(baseUrl),
+            rangedUri.start,
+            rangedUri.length,
+            cacheKey
+        );
+    }
+
+
+
+
+    private static boolean isBitrateAffordable(Format format, long bitrateEstimate) {
+        return ((format.bitrate != Format.NO_VALUE) && (format.bitrate <= (bitrateEstimate * BANDWIDTH_FRACTION)));
+    }
+
+
+
+
+}
@@ -34,6 +34,12 @@ public enum CacheType {
             final Cache<K, V> cache = new InMemoryCache<>();
             return (concurrent ? new ConcurrentCache<>(cache) : cache);
         }
+
+        @Override
+        <K, V> Cache<K, V> create(boolean concurrent, int maxSize) {
+            final Cache<K, V> cache = new InMemoryCache<>(maxSize);
+            return (concurrent ? new ConcurrentCache<>(cache) : cache);
+        }
     };
 
 
@@ -48,4 +54,17 @@ public enum CacheType {
     abstract <K, V> Cache<K, V> create(boolean concurrent);
 
 
+    /**
+     * Creates a new instance of the bounded {@link Cache}, which evicts
+     * the least recently used entries once the specified size is exceeded.
+     *
+     * @param concurrent whether to create a synchronized (thread-safe) version of {@link Cache}, or not
+     * @param maxSize the maximum number of the entries to be held by the cache
+     * @param <K> cache key type
+     * @param <V> cache value type
+     * @return the created {@link Cache}
+     */
+    abstract <K, V> Cache<K, V> create(boolean concurrent, int maxSize);
+
+
 }
@@ -17,10 +17,12 @@
 package com.hongyue.app.media.util.cache;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * An implementation of the in-memory (RAM) {@link Cache}.
+ * (Can optionally be bounded, in which case the least recently used entries get evicted first)
  *
  * @param <K> the cache key type
  * @param <V> the cache value type
@@ -40,6 +42,20 @@ final class InMemoryCache<K, V> implements Cache<K, V> {
 
 
 
+    InMemoryCache(final int maxSize) {
+        mCacheMap = new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return (size() > maxSize);
+            }
+
+        };
+    }
+
+
+
+
     @Override
     public final V put(K key, V value) {
         return mCacheMap.put(key, value);
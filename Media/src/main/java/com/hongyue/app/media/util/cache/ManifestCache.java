@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.util.cache;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded in-memory cache of the downloaded adaptive stream manifests (HLS playlists, DASH MPDs, etc.),
+ * which keeps every entry for a limited amount of time (TTL).
+ * <br>
+ * The live stream manifests (the HLS media playlists without the <strong>#EXT-X-ENDLIST</strong> tag,
+ * the dynamic DASH MPDs and the live Smooth Streaming manifests) keep changing, so they are never cached.
+ * (The least recently used entries get evicted first)
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ManifestCache {
+
+
+    /**
+     * The default maximum number of the cached manifests.
+     */
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    /**
+     * The default time the manifest is kept in the cache for. (30 minutes in milliseconds)
+     */
+    public static final long DEFAULT_TTL_IN_MILLIS = (30 * 60 * 1000L);
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final Pattern DASH_DYNAMIC_PATTERN = Pattern.compile("<MPD[^>]*type\\s*=\\s*[\"']dynamic[\"']");
+    private static final Pattern SS_LIVE_PATTERN = Pattern.compile("IsLive\\s*=\\s*[\"']true[\"']", Pattern.CASE_INSENSITIVE);
+
+    private static volatile ManifestCache sInstance;
+
+    private final Cache<String, Entry> mCache;
+
+
+
+
+    /**
+     * Lazily creates an instance of the {@link ManifestCache} (if necessary).
+     *
+     * @return the instance of the {@link ManifestCache}
+     */
+    public static ManifestCache getInstance() {
+        if(sInstance == null) {
+            synchronized(ManifestCache.class) {
+                if(sInstance == null) {
+                    sInstance = new ManifestCache(DEFAULT_MAX_SIZE);
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+
+
+
+    public ManifestCache(int maxSize) {
+        Preconditions.isTrue("You must specify a valid Cache Max Size.", (maxSize > 0));
+
+        mCache = CacheType.IN_MEMORY.create(true, maxSize);
+    }
+
+
+
+
+    /**
+     * Caches the downloaded manifest for the specified amount of time (unless it is a live stream one).
+     *
+     * @param key the manifest key
+     * @param uri the uri the manifest has actually been loaded from (after the redirects)
+     * @param data the manifest data
+     * @param ttlInMillis the time to keep the manifest for (in milliseconds)
+     * @return <strong>true</strong> if the manifest has been cached, <strong>false</strong> otherwise
+     */
+    public final boolean put(@NonNull String key, @NonNull Uri uri, @NonNull byte[] data, long ttlInMillis) {
+        Preconditions.nonEmpty(key);
+        Preconditions.nonNull(uri);
+        Preconditions.nonNull(data);
+
+        if((ttlInMillis <= 0L) || isLiveManifest(data)) {
+            return false;
+        }
+
+        mCache.put(key, new Entry(uri, data, (SystemClock.elapsedRealtime() + ttlInMillis)));
+
+        return true;
+    }
+
+
+
+
+    /**
+     * Retrieves the cached manifest, provided that it hasn't expired yet.
+     *
+     * @param key the manifest key
+     * @return the cached manifest entry, or null if there's none
+     */
+    @Nullable
+    public final Entry get(@NonNull String key) {
+        Preconditions.nonEmpty(key);
+
+        final Entry entry = mCache.get(key);
+
+        if((entry != null) && entry.isExpired()) {
+            mCache.remove(key);
+            return null;
+        }
+
+        return entry;
+    }
+
+
+
+
+    public final void remove(@NonNull String key) {
+        mCache.remove(key);
+    }
+
+
+
+
+    public final void clear() {
+        mCache.clear();
+    }
+
+
+
+
+    private static boolean isLiveManifest(byte[] data) {
+        final String manifest = new String(data, CHARSET);
+
+        // HLS (the master playlists reference the media ones, so they never change on their own)
+        if(manifest.startsWith("#EXTM3U") || manifest.startsWith("\uFEFF#EXTM3U")) {
+            return (manifest.contains("#EXTINF") && !manifest.contains("#EXT-X-ENDLIST"));
+        }
+
+        // DASH & Smooth Streaming
+        return (DASH_DYNAMIC_PATTERN.matcher(manifest).find() || SS_LIVE_PATTERN.matcher(manifest).find());
+    }
+
+
+
+
+    /**
+     * A cached manifest.
+     */
+    public static final class Entry {
+
+
+        private final Uri uri;
+
+        private final byte[] data;
+
+        private final long expiryTime;
+
+
+
+
+        Entry(Uri uri, byte[] data, long expiryTime) {
+            this.uri = uri;
+            this.data = data;
+            this.expiryTime = expiryTime;
+        }
+
+
+
+
+        @NonNull
+        public final Uri getUri() {
+            return this.uri;
+        }
+
+
+
+
+        @NonNull
+        public final byte[] getData() {
+            return this.data;
+        }
+
+
+
+
+        final boolean isExpired() {
+            return (SystemClock.elapsedRealtime() >= this.expiryTime);
+        }
+
+
+
+
+    }
+
+
+
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.util.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import com.hongyue.app.media.util.misc.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with the exponential (power of two) microsecond buckets.
+ * (The bucket <strong>i</strong> holds the samples within the <strong>[2^(i-1), 2^i)</strong> microseconds range,
+ * while the last bucket holds everything above)
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class LatencyHistogram {
+
+
+    public static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray bucketCounts;
+
+    private final AtomicLong totalLatency;
+    private final AtomicLong maxLatency;
+
+
+
+
+    public LatencyHistogram() {
+        this.bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalLatency = new AtomicLong();
+        this.maxLatency = new AtomicLong();
+    }
+
+
+
+
+    /**
+     * Records the specified latency sample.
+     *
+     * @param latencyInNanos the latency (in nanoseconds)
+     */
+    public final void record(long latencyInNanos) {
+        final long latency = Math.max(0L, latencyInNanos);
+
+        this.bucketCounts.incrementAndGet(getBucketIndex(latency));
+        this.totalLatency.addAndGet(latency);
+
+        long currentMax;
+
+        do {
+            currentMax = this.maxLatency.get();
+        } while((latency > currentMax) && !this.maxLatency.compareAndSet(currentMax, latency));
+    }
+
+
+
+
+    /**
+     * Removes all the recorded samples.
+     */
+    public final void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            this.bucketCounts.set(i, 0L);
+        }
+
+        this.totalLatency.set(0L);
+        this.maxLatency.set(0L);
+    }
+
+
+
+
+    /**
+     * Takes a consistent-enough (not an atomic) snapshot of the recorded samples.
+     *
+     * @return the snapshot
+     */
+    @NonNull
+    public final Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.bucketCounts.get(i);
+        }
+
+        return new Snapshot(
+            counts,
+            this.totalLatency.get(),
+            this.maxLatency.get()
+        );
+    }
+
+
+
+
+    private static int getBucketIndex(long latencyInNanos) {
+        final long latencyInMicros = TimeUnit.NANOSECONDS.toMicros(latencyInNanos);
+        return Math.min((Long.SIZE - Long.numberOfLeadingZeros(latencyInMicros)), (BUCKET_COUNT - 1));
+    }
+
+
+
+
+    /**
+     * Retrieves the upper bound of the specified bucket (in nanoseconds).
+     *
+     * @param bucketIndex the bucket index
+     * @return the upper bound of the bucket (in nanoseconds)
+     */
+    public static long getBucketUpperBound(int bucketIndex) {
+        Preconditions.isTrue("The Bucket Index is out of range.", ((bucketIndex >= 0) && (bucketIndex < BUCKET_COUNT)));
+        return TimeUnit.MICROSECONDS.toNanos(1L << bucketIndex);
+    }
+
+
+
+
+    /**
+     * An immutable snapshot of the {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+
+        private final long[] bucketCounts;
+
+        private final long count;
+        private final long totalLatency;
+        private final long maxLatency;
+
+
+
+
+        Snapshot(long[] bucketCounts, long totalLatency, long maxLatency) {
+            long count = 0L;
+
+            for(long bucketCount : bucketCounts) {
+                count += bucketCount;
+            }
+
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.totalLatency = totalLatency;
+            this.maxLatency = maxLatency;
+        }
+
+
+
+
+        /**
+         * Retrieves the number of the recorded samples.
+         */
+        public final long getCount() {
+            return this.count;
+        }
+
+
+
+
+        /**
+         * Retrieves the number of the samples recorded within the specified bucket.
+         */
+        public final long getBucketCount(int bucketIndex) {
+            return this.bucketCounts[bucketIndex];
+        }
+
+
+
+
+        /**
+         * Retrieves the sum of all the recorded latencies (in nanoseconds).
+         */
+        public final long getTotalLatency() {
+            return this.totalLatency;
+        }
+
+
+
+
+        /**
+         * Retrieves the mean latency (in nanoseconds).
+         */
+        public final long getMeanLatency() {
+            return ((this.count > 0L) ? (this.totalLatency / this.count) : 0L);
+        }
+
+
+
+
+        /**
+         * Retrieves the max recorded latency (in nanoseconds).
+         */
+        public final long getMaxLatency() {
+            return this.maxLatency;
+        }
+
+
+
+
+        /**
+         * Estimates the latency percentile (in nanoseconds) as the upper bound
+         * of the bucket the percentile falls into.
+         *
+         * @param percentile the percentile (a value between 0.0 and 1.0)
+         * @return the estimated latency percentile (in nanoseconds)
+         */
+        public final long getPercentile(double percentile) {
+            Preconditions.isTrue("The Percentile must lie within [0.0, 1.0].", ((percentile >= 0.0) && (percentile <= 1.0)));
+
+            if(this.count == 0L) {
+                return 0L;
+            }
+
+            final long targetCount = Math.max(1L, (long) Math.ceil(percentile * this.count));
+            long accumulatedCount = 0L;
+
+            for(int i = 0; i < BUCKET_COUNT; i++) {
+                accumulatedCount += this.bucketCounts[i];
+
+                if(accumulatedCount >= targetCount) {
+                    return Math.min(getBucketUpperBound(i), this.maxLatency);
+                }
+            }
+
+            return this.maxLatency;
+        }
+
+
+
+
+    }
+
+
+
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.util.metrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.hongyue.app.media.PlayerProvider;
+import com.hongyue.app.media.model.PlaybackStats;
+import com.hongyue.app.media.model.PlaybackStats.EventType;
+
+/**
+ * Collects the process-wide playback statistics reported by the {@link com.hongyue.app.media.player.Player}s
+ * (see {@link PlaybackMetricsTracker}).
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class PlaybackMetrics {
+
+
+    private static volatile PlaybackMetrics sInstance;
+
+    private final LatencyHistogram[] mDurationHistograms;
+
+    private volatile PlayerProvider.PlaybackStatsListener mListener;
+
+
+
+
+    @NonNull
+    public static PlaybackMetrics getInstance() {
+        if(sInstance == null) {
+            synchronized(PlaybackMetrics.class) {
+                if(sInstance == null) {
+                    sInstance = new PlaybackMetrics();
+                }
+            }
+        }
+
+        return sInstance;
+    }
+
+
+
+
+    private PlaybackMetrics() {
+        final EventType[] eventTypes = EventType.values();
+
+        mDurationHistograms = new LatencyHistogram[eventTypes.length];
+
+        for(int i = 0; i < eventTypes.length; i++) {
+            mDurationHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+
+
+
+    public final void record(@Nullable String key, @NonNull EventType eventType, long durationInNanos) {
+        mDurationHistograms[eventType.ordinal()].record(durationInNanos);
+
+        final PlayerProvider.PlaybackStatsListener listener = mListener;
+
+        if(listener != null) {
+            listener.onPlaybackEvent(key, eventType, durationInNanos);
+        }
+    }
+
+
+
+
+    public final void reset() {
+        for(LatencyHistogram durationHistogram : mDurationHistograms) {
+            durationHistogram.reset();
+        }
+    }
+
+
+
+
+    public final void setListener(@Nullable PlayerProvider.PlaybackStatsListener listener) {
+        mListener = listener;
+    }
+
+
+
+
+    @NonNull
+    public final PlaybackStats snapshot() {
+        final LatencyHistogram.Snapshot[] durationSnapshots = new LatencyHistogram.Snapshot[mDurationHistograms.length];
+
+        for(int i = 0; i < mDurationHistograms.length; i++) {
+            durationSnapshots[i] = mDurationHistograms[i].snapshot();
+        }
+
+        return new PlaybackStats(durationSnapshots);
+    }
+
+
+
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.util.metrics;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.video.VideoListener;
+import com.hongyue.app.media.model.PlaybackStats.EventType;
+
+/**
+ * Measures the playback events of a single {@link com.hongyue.app.media.player.Player}
+ * (the time-to-first-frame, the buffering stalls and the seek latencies) and reports them to the {@link PlaybackMetrics}.
+ * <br>
+ * Observes the ExoPlayer callbacks (including the video ones), while being notified of the playback
+ * requests by the owning Player. (All the methods must be called on the application's main thread)
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class PlaybackMetricsTracker implements Player.EventListener, VideoListener {
+
+
+    private static final long UNSET = -1L;
+
+    private final PlaybackMetrics metrics;
+
+    @Nullable
+    private String key;
+
+    private long playRequestTime;
+    private long seekRequestTime;
+    private long rebufferStartTime;
+
+    private boolean isFirstFrameRendered;
+    private boolean isStartMeasured;
+
+
+
+
+    public PlaybackMetricsTracker() {
+        this.metrics = PlaybackMetrics.getInstance();
+        this.playRequestTime = UNSET;
+        this.seekRequestTime = UNSET;
+        this.rebufferStartTime = UNSET;
+    }
+
+
+
+
+    /**
+     * Sets the key of the Playable the subsequent events are to be attributed to.
+     */
+    public final void setKey(@Nullable String key) {
+        this.key = key;
+    }
+
+
+
+
+    /**
+     * To be called when the playback has been requested to start (or resume).
+     */
+    public final void onPlayRequested() {
+        // the start of the prepared media is measured once (the resumptions are not the starts)
+        if(this.isStartMeasured || (this.playRequestTime != UNSET)) {
+            return;
+        }
+
+        // the first frame is already on the screen (e.g. it's been rendered by the preloaded player)
+        if(this.isFirstFrameRendered) {
+            this.isStartMeasured = true;
+            this.metrics.record(this.key, EventType.FIRST_FRAME, 0L);
+            return;
+        }
+
+        this.playRequestTime = System.nanoTime();
+    }
+
+
+
+
+    /**
+     * To be called when the playback has been requested to pause.
+     */
+    public final void onPauseRequested() {
+        // the abandoned starts and stalls are not representative, so they are dropped
+        this.playRequestTime = UNSET;
+        this.rebufferStartTime = UNSET;
+    }
+
+
+
+
+    /**
+     * To be called when the seek has been requested.
+     */
+    public final void onSeekRequested() {
+        // the buffering caused by the seek is not considered a stall
+        this.seekRequestTime = System.nanoTime();
+        this.rebufferStartTime = UNSET;
+    }
+
+
+
+
+    /**
+     * To be called when the video output surface has changed, and thus the first frame is to be rendered anew.
+     */
+    public final void onSurfaceChanged() {
+        this.isFirstFrameRendered = false;
+    }
+
+
+
+
+    /**
+     * To be called when the new media is being prepared, and thus its start is to be measured anew.
+     */
+    public final void onMediaChanged() {
+        this.isFirstFrameRendered = false;
+        this.isStartMeasured = false;
+        this.playRequestTime = UNSET;
+        this.seekRequestTime = UNSET;
+        this.rebufferStartTime = UNSET;
+    }
+
+
+
+
+    @Override
+    public final void onRenderedFirstFrame() {
+        this.isFirstFrameRendered = true;
+
+        if(this.playRequestTime != UNSET) {
+            record(EventType.FIRST_FRAME, this.playRequestTime);
+            this.playRequestTime = UNSET;
+            this.isStartMeasured = true;
+        }
+    }
+
+
+
+
+    @Override
+    public final void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        final boolean isBuffering = (playbackState == Player.STATE_BUFFERING);
+
+        // the buffering of the already started playback (excluding the seeks) is a stall
+        if(isBuffering
+                && playWhenReady
+                && this.isFirstFrameRendered
+                && (this.seekRequestTime == UNSET)
+                && (this.rebufferStartTime == UNSET)) {
+            this.rebufferStartTime = System.nanoTime();
+        }
+
+        if(!isBuffering && (this.rebufferStartTime != UNSET)) {
+            if(playWhenReady && (playbackState == Player.STATE_READY)) {
+                record(EventType.REBUFFER, this.rebufferStartTime);
+            }
+
+            this.rebufferStartTime = UNSET;
+        }
+
+        if((playbackState == Player.STATE_READY) && (this.seekRequestTime != UNSET)) {
+            record(EventType.SEEK, this.seekRequestTime);
+            this.seekRequestTime = UNSET;
+        }
+
+        if((playbackState == Player.STATE_IDLE) || (playbackState == Player.STATE_ENDED)) {
+            this.playRequestTime = UNSET;
+            this.seekRequestTime = UNSET;
+            this.rebufferStartTime = UNSET;
+        }
+    }
+
+
+
+
+    private void record(EventType eventType, long startTime) {
+        this.metrics.record(this.key, eventType, (System.nanoTime() - startTime));
+    }
+
+
+
+
+}
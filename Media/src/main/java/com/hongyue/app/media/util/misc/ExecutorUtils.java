@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.util.misc;
+
+import android.os.Process;
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of the internal {@link java.util.concurrent.Executor}-related utils.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class ExecutorUtils {
+
+
+    private static final long KEEP_ALIVE_TIME_IN_SECONDS = 30L;
+
+
+
+
+    /**
+     * Creates a bounded {@link ExecutorService} backed by the daemon threads of the background priority.
+     * (The idle threads are allowed to time out, so the executor does not hold any threads when unused)
+     *
+     * @param name the name to be used as a prefix for the names of the created threads
+     * @param threadCount the maximum number of the threads
+     * @return the created {@link ExecutorService}
+     */
+    @NonNull
+    public static ExecutorService newBackgroundExecutor(@NonNull String name, int threadCount) {
+        Preconditions.nonEmpty(name);
+        Preconditions.isTrue("The Thread Count must be positive.", (threadCount > 0));
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            KEEP_ALIVE_TIME_IN_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new BackgroundThreadFactory(name)
+        );
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+
+
+
+    /**
+     * Creates a bounded {@link ThreadPoolExecutor} backed by the daemon threads of the background priority,
+     * which runs the pending tasks in their natural order rather than in the order of submission.
+     * (The tasks must implement the {@link Comparable} and must be passed to the {@link ThreadPoolExecutor#execute(Runnable)}
+     * directly, as the {@link ExecutorService#submit(Runnable)} wraps them into the non-comparable ones)
+     *
+     * @param name the name to be used as a prefix for the names of the created threads
+     * @param threadCount the maximum number of the threads
+     * @return the created {@link ThreadPoolExecutor}
+     */
+    @NonNull
+    public static ThreadPoolExecutor newPriorityBackgroundExecutor(@NonNull String name, int threadCount) {
+        Preconditions.nonEmpty(name);
+        Preconditions.isTrue("The Thread Count must be positive.", (threadCount > 0));
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            KEEP_ALIVE_TIME_IN_SECONDS,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            new BackgroundThreadFactory(name)
+        );
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+
+
+
+    /**
+     * A {@link ThreadFactory} which creates the named daemon threads of the background priority.
+     */
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+
+
+        private final String name;
+
+        private final AtomicInteger threadCount;
+
+
+
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+            this.threadCount = new AtomicInteger();
+        }
+
+
+
+
+        @Override
+        public final Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, (this.name + "-" + this.threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+
+            return thread;
+        }
+
+
+
+
+    }
+
+
+
+
+}
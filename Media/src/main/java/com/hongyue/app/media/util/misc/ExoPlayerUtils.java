@@ -25,14 +25,31 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.view.View;
 
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
 import com.google.android.exoplayer2.source.LoopingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.cache.Cache;
-import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.hongyue.app.media.Config;
+import com.hongyue.app.media.player.cache.CacheEvictionPolicy;
+import com.hongyue.app.media.player.datasource.ManifestCacheDataSourceFactory;
 import com.hongyue.app.media.widget.Playable;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 
 /**
  * A set of utils specific to Exo Player.
@@ -45,19 +62,33 @@ public final class ExoPlayerUtils {
      */
     public static final long DEFAULT_CACHE_SIZE = (500 * 1024 * 1024);
 
-    private static Cache sCache;
+    /**
+     * The name of the default cache directory (located within the application's cache directory).
+     */
+    public static final String DEFAULT_CACHE_DIRECTORY_NAME = "media_cache";
+
+    // the SimpleCache locks its directory, so there can only be a single instance per directory within the process
+    private static final Map<String, SharedCache> sSharedCaches = new HashMap<>();
+
+    private static ExecutorService sCacheInitializer;
+
+    private static DatabaseProvider sDatabaseProvider;
+
+    private static final PriorityTaskManager sPriorityTaskManager = new PriorityTaskManager();
 
 
 
 
     /**
      * Creates/retrieves the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache} of the default
-     * size {@link #DEFAULT_CACHE_SIZE}.
+     * size {@link #DEFAULT_CACHE_SIZE}, located in the default directory (see {@link #getDefaultCacheDirectory(Context)}).
+     * (Blocks until the cache is initialized, see {@link #getCacheAsync(Context, File, long, CacheEvictionPolicy)})
      *
      * @param context the context
      * @return the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
      */
-    public static synchronized Cache getCache(@NonNull Context context) {
+    @NonNull
+    public static Cache getCache(@NonNull Context context) {
         return getCache(context, DEFAULT_CACHE_SIZE);
     }
 
@@ -65,24 +96,309 @@ public final class ExoPlayerUtils {
 
 
     /**
-     * Creates/retrieves the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache} of the specified size.
+     * Creates/retrieves the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache} of the specified size,
+     * located in the directory derived from the default one (see {@link #getCacheDirectory(Context, long, CacheEvictionPolicy)}).
+     * (Blocks until the cache is initialized, see {@link #getCacheAsync(Context, File, long, CacheEvictionPolicy)})
      *
      * @param context the context
      * @param cacheSize the desired cache size in bytes
      * @return the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
      */
-    public static synchronized Cache getCache(@NonNull Context context, long cacheSize) {
+    @NonNull
+    public static Cache getCache(@NonNull Context context, long cacheSize) {
         Preconditions.nonNull(context);
+        return getCache(context, getCacheDirectory(context, cacheSize, CacheEvictionPolicy.LRU), cacheSize);
+    }
+
+
+
+
+    /**
+     * Creates/retrieves the process-wide {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     * located in the specified directory.
+     * (Blocks until the cache is initialized, see {@link #getCacheAsync(Context, File, long, CacheEvictionPolicy)})
+     *
+     * @param context the context
+     * @param cacheDirectory the directory to store the cached media in (must be used exclusively by this cache)
+     * @param cacheSize the desired cache size in bytes
+     * @return the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     */
+    @NonNull
+    public static Cache getCache(@NonNull Context context, @NonNull File cacheDirectory, long cacheSize) {
+        return getCache(context, cacheDirectory, cacheSize, CacheEvictionPolicy.LRU);
+    }
+
 
-//        //禁用缓存
-//        if(sCache == null) {
-//            sCache = new SimpleCache(
-//                context.getExternalCacheDir(),
-//                new LeastRecentlyUsedCacheEvictor(cacheSize)
-//            );
-//        }
 
-        return sCache;
+
+    /**
+     * Creates/retrieves the process-wide {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     * located in the specified directory.
+     * (Blocks until the cache is initialized, see {@link #getCacheAsync(Context, File, long, CacheEvictionPolicy)})
+     *
+     * @param context the context
+     * @param cacheDirectory the directory to store the cached media in (must be used exclusively by this cache)
+     * @param cacheSize the desired cache size in bytes
+     * @param evictionPolicy the policy to evict the cached media with
+     * @return the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     */
+    @NonNull
+    public static Cache getCache(@NonNull Context context,
+                                 @NonNull File cacheDirectory,
+                                 long cacheSize,
+                                 @NonNull CacheEvictionPolicy evictionPolicy) {
+        return awaitCache(getCacheAsync(context, cacheDirectory, cacheSize, evictionPolicy));
+    }
+
+
+
+
+    /**
+     * Asynchronously creates/retrieves the process-wide {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     * located in the specified directory.
+     * <br>
+     * The cache is constructed on a background thread, and the returned {@link Future} (the readiness signal)
+     * completes only after the cache has scanned its directory and loaded its index, so that the completed cache
+     * can be used without blocking.
+     * (The cache is created upon the first request for the specified directory, so the subsequent requests
+     * for the same directory must specify the same size and eviction policy)
+     *
+     * @param context the context
+     * @param cacheDirectory the directory to store the cached media in (must be used exclusively by this cache)
+     * @param cacheSize the desired cache size in bytes
+     * @param evictionPolicy the policy to evict the cached media with
+     * @return the {@link Future} of the initialized {@link Cache}
+     * @throws IllegalStateException if the directory is already used by the cache of a different size or eviction policy
+     */
+    @NonNull
+    public static synchronized Future<Cache> getCacheAsync(@NonNull Context context,
+                                                           @NonNull File cacheDirectory,
+                                                           long cacheSize,
+                                                           @NonNull CacheEvictionPolicy evictionPolicy) {
+        Preconditions.nonNull(context);
+        Preconditions.nonNull(cacheDirectory);
+        Preconditions.nonNull(evictionPolicy);
+        Preconditions.isTrue("The Cache Size must be positive.", (cacheSize > 0));
+
+        final String cacheKey = cacheDirectory.getAbsolutePath();
+        final SharedCache sharedCache = sSharedCaches.get(cacheKey);
+
+        if(sharedCache != null) {
+            if((sharedCache.cacheSize != cacheSize) || (sharedCache.evictionPolicy != evictionPolicy)) {
+                throw new IllegalStateException(
+                    "The Cache Directory " + cacheKey + " is already used by the Cache of " +
+                    sharedCache.cacheSize + " bytes (" + sharedCache.evictionPolicy + ")."
+                );
+            }
+
+            return sharedCache.cacheTask;
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+        final FutureTask<Cache> cacheTask = new FutureTask<>(() -> {
+            final SimpleCache cache = new SimpleCache(
+                cacheDirectory,
+                evictionPolicy.create(cacheSize),
+                getDatabaseProvider(applicationContext)
+            );
+
+            // the SimpleCache loads its index asynchronously, while holding its own lock,
+            // so any synchronized call waits for the initialization to complete
+            cache.getCacheSpace();
+
+            return cache;
+        });
+
+        sSharedCaches.put(cacheKey, new SharedCache(cacheSize, evictionPolicy, cacheTask));
+        getCacheInitializer().execute(cacheTask);
+
+        return cacheTask;
+    }
+
+
+
+
+    /**
+     * Resolves the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache} to be used for the specified {@link Config}.
+     * (Blocks until the cache is initialized, see {@link #getCacheAsync(Context, Config)})
+     *
+     * @param context the context
+     * @param config the player configuration
+     * @return the resolved {@link Cache}, or null if the caching is disabled
+     */
+    @Nullable
+    public static Cache getCache(@NonNull Context context, @NonNull Config config) {
+        final Future<Cache> cacheFuture = getCacheAsync(context, config);
+        return ((cacheFuture != null) ? awaitCache(cacheFuture) : null);
+    }
+
+
+
+
+    /**
+     * Asynchronously resolves the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache} to be used for the specified {@link Config}.
+     * (That is either the explicitly set {@link Config#cache} or the process-wide shared one, if allowed,
+     * which is keyed by the {@link Config#cacheDirectory}, {@link Config#cacheSize} and {@link Config#cacheEvictionPolicy})
+     *
+     * @param context the context
+     * @param config the player configuration
+     * @return the {@link Future} of the initialized {@link Cache}, or null if the caching is disabled
+     */
+    @Nullable
+    public static Future<Cache> getCacheAsync(@NonNull Context context, @NonNull Config config) {
+        Preconditions.nonNull(context);
+        Preconditions.nonNull(config);
+
+        if(config.hasCache()) {
+            final FutureTask<Cache> cacheTask = new FutureTask<>(() -> config.cache);
+            cacheTask.run();
+
+            return cacheTask;
+        }
+
+        if(!config.useDefaultCache) {
+            return null;
+        }
+
+        final File cacheDirectory = (config.hasCacheDirectory() ? config.cacheDirectory : getCacheDirectory(context, config.cacheSize, config.cacheEvictionPolicy));
+
+        return getCacheAsync(
+            context,
+            cacheDirectory,
+            config.cacheSize,
+            config.cacheEvictionPolicy
+        );
+    }
+
+
+
+
+    private static Cache awaitCache(Future<Cache> cacheFuture) {
+        try {
+            return cacheFuture.get();
+        } catch(InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The Cache initialization has been interrupted.", exception);
+        } catch(ExecutionException exception) {
+            throw new IllegalStateException("The Cache initialization has failed.", exception.getCause());
+        }
+    }
+
+
+
+
+    /**
+     * Retrieves the process-wide {@link PriorityTaskManager}, which arbitrates the network loading
+     * among the Players of all the pools (as well as the prefetcher), so that the loading of the
+     * playing media is never starved by the preloading of the upcoming ones.
+     * (See {@link com.hongyue.app.media.player.loadcontrol.ProfiledLoadControl})
+     *
+     * @return the shared {@link PriorityTaskManager}
+     */
+    @NonNull
+    public static PriorityTaskManager getPriorityTaskManager() {
+        return sPriorityTaskManager;
+    }
+
+
+
+
+    private static synchronized ExecutorService getCacheInitializer() {
+        if(sCacheInitializer == null) {
+            sCacheInitializer = ExecutorUtils.newBackgroundExecutor("CacheInitializer", 1);
+        }
+
+        return sCacheInitializer;
+    }
+
+
+
+
+    /**
+     * Creates the {@link DataSource.Factory} to be used for the loading of the adaptive stream manifests.
+     * (The manifests are downloaded via the {@link Config#dataSourceFactory}, if set, and are kept
+     * in the process-wide in-memory {@link com.hongyue.app.media.util.cache.ManifestCache})
+     *
+     * @param context the context
+     * @param userAgent the user agent to be used by the default http data sources
+     * @param config the player configuration
+     * @return the created {@link DataSource.Factory}
+     */
+    @NonNull
+    public static DataSource.Factory createManifestDataSourceFactory(@NonNull Context context,
+                                                                     @NonNull String userAgent,
+                                                                     @NonNull Config config) {
+        Preconditions.nonNull(context);
+        Preconditions.nonEmpty(userAgent);
+        Preconditions.nonNull(config);
+
+        final DataSource.Factory baseFactory = (config.hasDataSourceFactory() ? config.dataSourceFactory : new DefaultHttpDataSourceFactory(userAgent));
+
+        return new ManifestCacheDataSourceFactory(new DefaultDataSourceFactory(context, baseFactory));
+    }
+
+
+
+
+    /**
+     * Retrieves the default directory of the {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}.
+     * (Located within the external cache directory, if available, or within the internal one otherwise)
+     *
+     * @param context the context
+     * @return the default cache directory
+     */
+    @NonNull
+    public static File getDefaultCacheDirectory(@NonNull Context context) {
+        Preconditions.nonNull(context);
+
+        final File externalCacheDirectory = context.getExternalCacheDir();
+        final File baseDirectory = ((externalCacheDirectory != null) ? externalCacheDirectory : context.getCacheDir());
+
+        return new File(baseDirectory, DEFAULT_CACHE_DIRECTORY_NAME);
+    }
+
+
+
+
+    /**
+     * Retrieves the directory of the process-wide shared {@link com.google.android.exoplayer2.ExoPlayer} {@link Cache}
+     * of the specified size and eviction policy.
+     * (That is the default directory (see {@link #getDefaultCacheDirectory(Context)}) for the default size
+     * and the {@link CacheEvictionPolicy#LRU} policy, or its sibling named after the non-default parameters otherwise)
+     *
+     * @param context the context
+     * @param cacheSize the cache size in bytes
+     * @param evictionPolicy the eviction policy of the cache
+     * @return the cache directory
+     */
+    @NonNull
+    public static File getCacheDirectory(@NonNull Context context, long cacheSize, @NonNull CacheEvictionPolicy evictionPolicy) {
+        Preconditions.nonNull(evictionPolicy);
+
+        final File defaultCacheDirectory = getDefaultCacheDirectory(context);
+        String directoryName = DEFAULT_CACHE_DIRECTORY_NAME;
+
+        if(evictionPolicy != CacheEvictionPolicy.LRU) {
+            directoryName += ("_" + evictionPolicy.name().toLowerCase(Locale.US));
+        }
+
+        if(cacheSize != DEFAULT_CACHE_SIZE) {
+            directoryName += ("_" + cacheSize);
+        }
+
+        // the SimpleCache directories must not be nested, hence the sibling one
+        return new File(defaultCacheDirectory.getParentFile(), directoryName);
+    }
+
+
+
+
+    private static synchronized DatabaseProvider getDatabaseProvider(Context context) {
+        if(sDatabaseProvider == null) {
+            sDatabaseProvider = new ExoDatabaseProvider(context.getApplicationContext());
+        }
+
+        return sDatabaseProvider;
     }
 
 
@@ -160,4 +476,33 @@ public final class ExoPlayerUtils {
 
 
 
-}
\ No newline at end of file
+    /**
+     * The process-wide shared {@link Cache} along with the parameters it's been created with.
+     */
+    private static final class SharedCache {
+
+
+        private final long cacheSize;
+
+        private final CacheEvictionPolicy evictionPolicy;
+
+        private final FutureTask<Cache> cacheTask;
+
+
+
+
+        SharedCache(long cacheSize, CacheEvictionPolicy evictionPolicy, FutureTask<Cache> cacheTask) {
+            this.cacheSize = cacheSize;
+            this.evictionPolicy = evictionPolicy;
+            this.cacheTask = cacheTask;
+        }
+
+
+
+
+    }
+
+
+
+
+}
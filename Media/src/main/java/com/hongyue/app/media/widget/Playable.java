@@ -48,6 +48,20 @@ public interface Playable extends PlayabilityStateChangeObserver {
      */
     void stop();
 
+    /**
+     * Preloads the media associated with this item ahead of its playback.
+     * (Prepares the {@link com.arthurivanets.arvi.player.Player} in a paused, muted and detached state,
+     * provided that the Player can be obtained without the eviction of any other Player)
+     */
+    void preload();
+
+    /**
+     * Parks the {@link com.arthurivanets.arvi.player.Player} associated with this item.
+     * (Pauses the playback and unbinds the surface as well as listeners, but keeps the loaded media,
+     * so that the playback can be resumed almost instantly if the item comes back shortly)
+     */
+    void park();
+
     /**
      * Releases the {@link com.arthurivanets.arvi.player.Player} associated with this item.
      * (Stops the playback and unbinds the surface as well as listeners)
@@ -18,6 +18,7 @@ import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.ui.PlayerView;
 import com.hongyue.app.media.Config;
+import com.hongyue.app.media.PlayerProvider;
 import com.hongyue.app.media.PlayerProviderImpl;
 import com.hongyue.app.media.model.PlaybackInfo;
 import com.hongyue.app.media.model.VolumeInfo;
@@ -127,6 +128,31 @@ public abstract class PlayableFragment extends Fragment implements Playable, Pla
 
 
 
+    @Override
+    public final void preload() {
+        if(!isTrulyPlayable()) {
+            return;
+        }
+
+        preloadPlayer();
+    }
+
+
+
+
+    @Override
+    public final void park() {
+        if(!isTrulyPlayable()) {
+            return;
+        }
+
+        parkPlayer();
+        onStateChanged(PlaybackState.PAUSED);
+    }
+
+
+
+
     @Override
     public final void release() {
         if(!isTrulyPlayable()) {
@@ -239,6 +265,56 @@ public abstract class PlayableFragment extends Fragment implements Playable, Pla
 
 
 
+    private void preloadPlayer() {
+        final PlayerProvider playerProvider = PlayerProviderImpl.getInstance(itemView.getContext());
+
+        // the Player is either already in use or has already been preloaded
+        if(playerProvider.hasPlayer(getConfig(), getKey())) {
+            return;
+        }
+
+        final Player player = playerProvider.tryInitPlayer(getConfig(), getKey());
+
+        if(player == null) {
+            return;
+        }
+
+        // preparing the media without attaching the Player to the view and without any audio output
+        player.init();
+        player.getVolumeController().setMuted(true);
+        player.setBufferingActive(false);
+        player.setMediaSource(createMediaSource());
+        player.seek(getPlaybackInfo().getPlaybackPosition());
+
+        // a reused Player may still have the playWhenReady flag set from its previous playback
+        player.pause();
+        player.prepare(false);
+    }
+
+
+
+
+    private void parkPlayer() {
+        final Player player = getPlayer();
+        final PlaybackInfo playbackInfo = getPlaybackInfo();
+        destroyPalyerTimer();
+
+        if(player != null) {
+            player.pause();
+            player.detach(mPlayerView);
+            player.setAttachmentStateDelegate(null);
+            player.removeEventListener(this);
+
+            playbackInfo.setPlaybackPosition(player.getPlaybackPosition());
+            setPlaybackInfo(playbackInfo);
+        }
+
+        PlayerProviderImpl.getInstance(itemView.getContext()).park(getConfig(), getKey());
+    }
+
+
+
+
     private void releasePlayer() {
         final Player player = getPlayer();
         unregisterPlayer();
@@ -328,8 +404,9 @@ public abstract class PlayableFragment extends Fragment implements Playable, Pla
 
 
     private MediaSource createMediaSource() {
-        return PlayerProviderImpl.getInstance(itemView.getContext()).createMediaSource(
+        return PlayerProviderImpl.getInstance(itemView.getContext()).getOrCreateMediaSource(
                 getConfig(),
+                getKey(),
                 Uri.parse(getUrl()),
                 isLooping()
         );
@@ -17,6 +17,8 @@
 package com.hongyue.app.media.widget;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
@@ -24,6 +26,8 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import com.hongyue.app.media.PlayerProviderImpl;
+import com.hongyue.app.media.PrefetchManager;
+import com.hongyue.app.media.PrefetchManagerImpl;
 import com.hongyue.app.media.player.Player;
 import com.hongyue.app.media.util.misc.Preconditions;
 
@@ -47,10 +51,32 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
         PlaybackTriggeringState.IDLING
     );
 
+    private static final int DEFAULT_PRELOAD_ITEM_COUNT = 1;
+    private static final int DEFAULT_PREFETCH_ITEM_COUNT = 3;
+
+    // the preloading budget is gradually reduced between these scroll speeds (in screens per second)
+    private static final float PRELOAD_BACKOFF_START_SPEED = 0.5f;
+    private static final float PRELOAD_BACKOFF_END_SPEED = 2f;
+
+    // the scroll events that are further apart are considered to be a part of a new scroll
+    private static final long MAX_SCROLL_EVENT_INTERVAL_IN_MILLIS = 100L;
+
     private final Set<PlaybackTriggeringState> mPlaybackTriggeringStates = new HashSet<>();
+    private final Set<Uri> mPrefetchedUris = new HashSet<>();
 
     private int mPreviousScrollDeltaX;
     private int mPreviousScrollDeltaY;
+    private int mPreloadItemCount;
+    private int mPrefetchItemCount;
+    private int mPreloadAnchorPosition;
+    private int mPreloadScrollDirection;
+    private int mPrefetchAnchorPosition;
+    private int mPrefetchScrollDirection;
+    private int mScrollDirection;
+
+    private long mPreviousScrollTime;
+
+    private float mScrollVelocity;
 
     private AutoplayMode mAutoplayMode;
 
@@ -87,6 +113,15 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
     private void init() {
         mPreviousScrollDeltaX = 0;
         mPreviousScrollDeltaY = 0;
+        mPreloadItemCount = DEFAULT_PRELOAD_ITEM_COUNT;
+        mPrefetchItemCount = DEFAULT_PREFETCH_ITEM_COUNT;
+        mPreloadAnchorPosition = NO_POSITION;
+        mPreloadScrollDirection = 0;
+        mPrefetchAnchorPosition = NO_POSITION;
+        mPrefetchScrollDirection = 0;
+        mScrollDirection = 1;
+        mPreviousScrollTime = 0L;
+        mScrollVelocity = 0f;
         mAutoplayMode = AutoplayMode.ONE_AT_A_TIME;
         mIsAutoplayEnabled = true;
 
@@ -101,6 +136,8 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
     @Override
     public final void startPlayback() {
         handleItemPlayback(true);
+        preloadUpcomingItems(mPreloadItemCount);
+        prefetchUpcomingItems();
     }
 
 
@@ -175,9 +212,10 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
             return;
         }
 
-        // releasing the associated player (Playable-wise) and other resources
+        // parking the associated player (Playable-wise), so that the item can
+        // resume its playback right away if it gets scrolled back shortly
         final Playable playable = (Playable) viewHolder;
-        playable.release();
+        playable.park();
     }
 
 
@@ -221,7 +259,7 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
             return;
         }
 
-        playable.release();
+        playable.park();
     }
 
 
@@ -270,6 +308,228 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
 
 
 
+    private void preloadUpcomingItems(int budget) {
+        preloadUpcomingItems(budget, false);
+    }
+
+
+
+
+    private void preloadUpcomingItems(int budget, boolean isAnchorChangeRequired) {
+        final Adapter adapter = getAdapter();
+        final int childCount = getChildCount();
+
+        // the preloaded items are only ever started by the autoplay
+        if(!isAutoplayEnabled() || (budget <= 0) || (adapter == null) || (childCount == 0)) {
+            return;
+        }
+
+        final int anchorPosition = findAnchorPosition();
+
+        // the upcoming items only change along with the anchor item or the scroll direction
+        if((anchorPosition == NO_POSITION)
+                || (isAnchorChangeRequired
+                && (anchorPosition == mPreloadAnchorPosition)
+                && (mScrollDirection == mPreloadScrollDirection))) {
+            return;
+        }
+
+        mPreloadAnchorPosition = anchorPosition;
+        mPreloadScrollDirection = mScrollDirection;
+
+        // preloading the upcoming items that have already been laid out (but are not yet in the playable area)
+        final int itemCount = adapter.getItemCount();
+        int preloadedItemCount = 0;
+        int position;
+        ViewHolder viewHolder;
+        Playable playable;
+
+        for(int i = 1; (i <= childCount) && (preloadedItemCount < budget); i++) {
+            position = (anchorPosition + (mScrollDirection * i));
+
+            if((position < 0) || (position >= itemCount)) {
+                break;
+            }
+
+            viewHolder = findViewHolderForAdapterPosition(position);
+
+            if(viewHolder == null) {
+                break;
+            }
+
+            if(!(viewHolder instanceof Playable)) {
+                continue;
+            }
+
+            playable = (Playable) viewHolder;
+
+            if(playable.isTrulyPlayable() && !playable.wantsToPlay()) {
+                playable.preload();
+                preloadedItemCount++;
+            }
+        }
+    }
+
+
+
+
+    private void prefetchUpcomingItems() {
+        final Adapter adapter = getAdapter();
+
+        if((mPrefetchItemCount <= 0) || !(adapter instanceof PrefetchableAdapter)) {
+            return;
+        }
+
+        final int anchorPosition = findAnchorPosition();
+
+        // the upcoming items only change along with the anchor item or the scroll direction
+        if((anchorPosition == NO_POSITION)
+                || ((anchorPosition == mPrefetchAnchorPosition) && (mScrollDirection == mPrefetchScrollDirection))) {
+            return;
+        }
+
+        mPrefetchAnchorPosition = anchorPosition;
+        mPrefetchScrollDirection = mScrollDirection;
+
+        final PrefetchableAdapter prefetchableAdapter = (PrefetchableAdapter) adapter;
+        final PrefetchManager prefetchManager = PrefetchManagerImpl.getInstance(getContext());
+        final Set<Uri> uris = new HashSet<>();
+        final int itemCount = adapter.getItemCount();
+        int position;
+        String url;
+        Uri uri;
+
+        for(int i = 1; i <= mPrefetchItemCount; i++) {
+            position = (anchorPosition + (mScrollDirection * i));
+
+            if((position < 0) || (position >= itemCount)) {
+                break;
+            }
+
+            url = prefetchableAdapter.getPrefetchUrl(position);
+
+            if((url == null) || url.isEmpty()) {
+                continue;
+            }
+
+            uri = Uri.parse(url);
+            uris.add(uri);
+
+            prefetchManager.prefetch(prefetchableAdapter.getPrefetchConfig(position), uri, (i - 1));
+        }
+
+        // dropping the requests of the items the user has scrolled away from
+        // (only the ones queued by this container, as the PrefetchManager is shared by all of them)
+        for(Uri prefetchedUri : mPrefetchedUris) {
+            if(!uris.contains(prefetchedUri)) {
+                prefetchManager.cancel(prefetchedUri);
+            }
+        }
+
+        mPrefetchedUris.clear();
+        mPrefetchedUris.addAll(uris);
+    }
+
+
+
+
+    private int findAnchorPosition() {
+        final int childCount = getChildCount();
+
+        // the anchor is the farthest (in the scroll direction) item of the playable area,
+        // or the farthest laid out item, if there are no items within the playable area
+        int anchorPosition = NO_POSITION;
+        int fallbackAnchorPosition = NO_POSITION;
+        int position;
+        ViewHolder viewHolder;
+
+        for(int i = 0; i < childCount; i++) {
+            viewHolder = findContainingViewHolder(getChildAt(i));
+            position = ((viewHolder != null) ? viewHolder.getAdapterPosition() : NO_POSITION);
+
+            if(position == NO_POSITION) {
+                continue;
+            }
+
+            fallbackAnchorPosition = getFarthestPosition(fallbackAnchorPosition, position);
+
+            if((viewHolder instanceof Playable) && ((Playable) viewHolder).wantsToPlay()) {
+                anchorPosition = getFarthestPosition(anchorPosition, position);
+            }
+        }
+
+        return ((anchorPosition != NO_POSITION) ? anchorPosition : fallbackAnchorPosition);
+    }
+
+
+
+
+    private int getFarthestPosition(int currentPosition, int position) {
+        if(currentPosition == NO_POSITION) {
+            return position;
+        }
+
+        return ((mScrollDirection > 0) ? Math.max(currentPosition, position) : Math.min(currentPosition, position));
+    }
+
+
+
+
+    private int calculatePreloadBudget() {
+        final boolean isHorizontal = isHorizontallyScrollable();
+        final int extent = (isHorizontal ? getWidth() : getHeight());
+
+        if(extent <= 0) {
+            return mPreloadItemCount;
+        }
+
+        // backing off while flinging, as the items fly by too fast for the preloading to pay off
+        final float scrollSpeed = (Math.abs(mScrollVelocity) / extent);
+
+        if(scrollSpeed <= PRELOAD_BACKOFF_START_SPEED) {
+            return mPreloadItemCount;
+        } else if(scrollSpeed >= PRELOAD_BACKOFF_END_SPEED) {
+            return 0;
+        }
+
+        final float budgetRatio = ((PRELOAD_BACKOFF_END_SPEED - scrollSpeed) / (PRELOAD_BACKOFF_END_SPEED - PRELOAD_BACKOFF_START_SPEED));
+
+        return Math.round(mPreloadItemCount * budgetRatio);
+    }
+
+
+
+
+    private void updateScrollVelocity(int dx, int dy) {
+        final long currentTime = SystemClock.uptimeMillis();
+        final long elapsedTime = (currentTime - mPreviousScrollTime);
+        final int delta = (isHorizontallyScrollable() ? dx : dy);
+
+        if(delta != 0) {
+            mScrollDirection = ((delta > 0) ? 1 : -1);
+        }
+
+        // smoothing the velocity out, as the individual scroll deltas are quite noisy
+        if((elapsedTime > 0L) && (elapsedTime <= MAX_SCROLL_EVENT_INTERVAL_IN_MILLIS)) {
+            mScrollVelocity = (0.5f * (mScrollVelocity + ((delta * 1000f) / elapsedTime)));
+        } else {
+            mScrollVelocity = 0f;
+        }
+
+        mPreviousScrollTime = currentTime;
+    }
+
+
+
+
+    private boolean isHorizontallyScrollable() {
+        final LayoutManager layoutManager = getLayoutManager();
+        return ((layoutManager != null) && layoutManager.canScrollHorizontally());
+    }
+
+
+
+
     private void stopItemPlayback() {
         final int childCount = getChildCount();
         ViewHolder viewHolder;
@@ -402,12 +662,75 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
 
 
 
+    /**
+     * Sets the maximum number of the upcoming (in the scroll direction) {@link Playable} items
+     * to be preloaded ahead of their arrival to the playable area.
+     * (The actual number gets reduced as the scroll speed increases, down to none while flinging)
+     *
+     * @param preloadItemCount the number of the items to preload, or 0 to disable the preloading
+     */
+    public final void setPreloadItemCount(int preloadItemCount) {
+        Preconditions.isTrue("The Preload Item Count cannot be negative.", (preloadItemCount >= 0));
+
+        mPreloadItemCount = preloadItemCount;
+        mPreloadAnchorPosition = NO_POSITION;
+    }
+
+
+
+
+    /**
+     * Sets the number of the upcoming (in the scroll direction) items the media of which is to be prefetched
+     * into the cache by the {@link PrefetchManager}. (Requires the adapter to implement the {@link PrefetchableAdapter})
+     *
+     * @param prefetchItemCount the number of the items to prefetch, or 0 to disable the prefetching
+     */
+    public final void setPrefetchItemCount(int prefetchItemCount) {
+        Preconditions.isTrue("The Prefetch Item Count cannot be negative.", (prefetchItemCount >= 0));
+
+        mPrefetchItemCount = prefetchItemCount;
+        mPrefetchAnchorPosition = NO_POSITION;
+    }
+
+
+
+
+    /**
+     * Retrieves the number of the upcoming items the media of which is to be prefetched.
+     *
+     * @return the number of the items to prefetch
+     */
+    public final int getPrefetchItemCount() {
+        return mPrefetchItemCount;
+    }
+
+
+
+
+    /**
+     * Retrieves the maximum number of the upcoming {@link Playable} items to be preloaded.
+     *
+     * @return the number of the items to preload
+     */
+    public final int getPreloadItemCount() {
+        return mPreloadItemCount;
+    }
+
+
+
+
     @Override
     public final void onScrollStateChanged(int state) {
         super.onScrollStateChanged(state);
         if (isAutoplayEnabled()) {
             handleItemPlayback(canPlay());
         }
+
+        // catching up with the preloading once the scrolling is over
+        if(state == SCROLL_STATE_IDLE) {
+            mScrollVelocity = 0f;
+            preloadUpcomingItems(mPreloadItemCount);
+        }
     }
 
 
@@ -427,6 +750,10 @@ public final class PlayableItemsRecyclerView extends RecyclerView implements Pla
             mPreviousScrollDeltaY = dy;
         }
 
+        updateScrollVelocity(dx, dy);
+        preloadUpcomingItems(calculatePreloadBudget(), true);
+        prefetchUpcomingItems();
+
     }
 
 
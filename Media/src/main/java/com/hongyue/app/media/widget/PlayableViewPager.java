@@ -1,11 +1,14 @@
 package com.hongyue.app.media.widget;
 
 import android.content.Context;
+import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.viewpager.widget.ViewPager;
 
 import android.util.AttributeSet;
 
+import com.hongyue.app.media.PrefetchManager;
+import com.hongyue.app.media.PrefetchManagerImpl;
 import com.hongyue.app.media.util.misc.Preconditions;
 import com.hongyue.app.media.view.VerticalViewPager;
 
@@ -32,10 +35,15 @@ public class PlayableViewPager extends VerticalViewPager implements PlayableItem
             PlaybackTriggeringState.IDLING
     );
 
+    private static final int DEFAULT_PREFETCH_ITEM_COUNT = 3;
+
     private final Set<PlaybackTriggeringState> mPlaybackTriggeringStates = new HashSet<>();
+    private final Set<Uri> mPrefetchedUris = new HashSet<>();
 
     private int mPreviousScrollDeltaX;
     private int mPreviousScrollDeltaY;
+    private int mPrefetchItemCount;
+    private int mSelectedPosition;
 
     private AutoplayMode mAutoplayMode;
 
@@ -58,6 +66,8 @@ public class PlayableViewPager extends VerticalViewPager implements PlayableItem
     private void init() {
         mPreviousScrollDeltaX = 0;
         mPreviousScrollDeltaY = 0;
+        mPrefetchItemCount = DEFAULT_PREFETCH_ITEM_COUNT;
+        mSelectedPosition = 0;
         mAutoplayMode = AutoplayMode.ONE_AT_A_TIME;
         mIsAutoplayEnabled = true;
 
@@ -70,6 +80,7 @@ public class PlayableViewPager extends VerticalViewPager implements PlayableItem
     @Override
     public void startPlayback() {
         handleItemPlayback(true);
+        prefetchUpcomingItems(getCurrentItem(), 1);
 
     }
 
@@ -316,7 +327,87 @@ public class PlayableViewPager extends VerticalViewPager implements PlayableItem
 
     @Override
     public void onPageSelected(int i) {
+        // the pages are prefetched in the direction of the paging
+        final int direction = ((i >= mSelectedPosition) ? 1 : -1);
+
+        mSelectedPosition = i;
+
+        prefetchUpcomingItems(i, direction);
+    }
+
+
+
+
+    private void prefetchUpcomingItems(int selectedPosition, int direction) {
+        final PlayablePageAdapter adapter = getAdapter();
+
+        if((mPrefetchItemCount <= 0) || !(adapter instanceof PrefetchableAdapter)) {
+            return;
+        }
+
+        final PrefetchableAdapter prefetchableAdapter = (PrefetchableAdapter) adapter;
+        final PrefetchManager prefetchManager = PrefetchManagerImpl.getInstance(getContext());
+        final Set<Uri> uris = new HashSet<>();
+        final int itemCount = adapter.getCount();
+        int position;
+        String url;
+        Uri uri;
+
+        for(int i = 1; i <= mPrefetchItemCount; i++) {
+            position = (selectedPosition + (direction * i));
+
+            if((position < 0) || (position >= itemCount)) {
+                break;
+            }
+
+            url = prefetchableAdapter.getPrefetchUrl(position);
+
+            if((url == null) || url.isEmpty()) {
+                continue;
+            }
+
+            uri = Uri.parse(url);
+            uris.add(uri);
+
+            prefetchManager.prefetch(prefetchableAdapter.getPrefetchConfig(position), uri, (i - 1));
+        }
+
+        // dropping the requests of the pages the user has moved away from
+        // (only the ones queued by this container, as the PrefetchManager is shared by all of them)
+        for(Uri prefetchedUri : mPrefetchedUris) {
+            if(!uris.contains(prefetchedUri)) {
+                prefetchManager.cancel(prefetchedUri);
+            }
+        }
+
+        mPrefetchedUris.clear();
+        mPrefetchedUris.addAll(uris);
+    }
+
+
+
+
+    /**
+     * Sets the number of the upcoming (in the paging direction) pages the media of which is to be prefetched
+     * into the cache by the {@link PrefetchManager}. (Requires the adapter to implement the {@link PrefetchableAdapter})
+     *
+     * @param prefetchItemCount the number of the pages to prefetch, or 0 to disable the prefetching
+     */
+    public final void setPrefetchItemCount(int prefetchItemCount) {
+        Preconditions.isTrue("The Prefetch Item Count cannot be negative.", (prefetchItemCount >= 0));
+        mPrefetchItemCount = prefetchItemCount;
+    }
+
+
+
 
+    /**
+     * Retrieves the number of the upcoming pages the media of which is to be prefetched.
+     *
+     * @return the number of the pages to prefetch
+     */
+    public final int getPrefetchItemCount() {
+        return mPrefetchItemCount;
     }
 
     @Override
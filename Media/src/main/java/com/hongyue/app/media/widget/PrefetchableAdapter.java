@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hongyue.app.media.widget;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hongyue.app.media.Config;
+
+
+/**
+ * A contract to be implemented by the adapters of the {@link PlayableItemsContainer}s
+ * in order to enable the prefetching of the media of the upcoming items.
+ * (See {@link com.hongyue.app.media.PrefetchManager})
+ */
+public interface PrefetchableAdapter {
+
+    /**
+     * Retrieves the media Url of the item at the specified adapter position.
+     *
+     * @param position the adapter position of the item
+     * @return the media url, or null if the item has nothing to prefetch
+     */
+    @Nullable
+    String getPrefetchUrl(int position);
+
+    /**
+     * Retrieves the {@link Config} used by the item at the specified adapter position.
+     * (Should match the {@link Playable#getConfig()} of the corresponding item)
+     *
+     * @param position the adapter position of the item
+     * @return the player configuration
+     */
+    @NonNull
+    Config getPrefetchConfig(int position);
+
+}
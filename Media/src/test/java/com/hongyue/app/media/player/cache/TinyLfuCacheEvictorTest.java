@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.cache;
+
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Replays the feed-like access traces against the {@link TinyLfuCacheEvictor}
+ * and the ExoPlayer's {@link LeastRecentlyUsedCacheEvictor}.
+ */
+public class TinyLfuCacheEvictorTest {
+
+
+    private static final long MEDIA_SIZE = (1024 * 1024);
+    private static final long CACHE_SIZE = (16 * MEDIA_SIZE);
+
+    private static final int POPULAR_MEDIA_COUNT = 8;
+    private static final int ONE_SHOT_MEDIA_PER_STEP = 3;
+    private static final int STEP_COUNT = 2000;
+
+    private static final long TRACE_SEED = 42L;
+
+
+
+
+    @Test
+    public void outperformsLruOnFeedLikeTrace() {
+        final int lruHitCount = replayFeedTrace(new LeastRecentlyUsedCacheEvictor(CACHE_SIZE));
+        final int tinyLfuHitCount = replayFeedTrace(new TinyLfuCacheEvictor(CACHE_SIZE));
+
+        assertTrue(
+            ("TinyLFU hits: " + tinyLfuHitCount + ", LRU hits: " + lruHitCount),
+            (tinyLfuHitCount > lruHitCount)
+        );
+    }
+
+
+
+
+    @Test
+    public void keepsTouchedMediaCached() {
+        final TraceReplayCache cache = new TraceReplayCache(new TinyLfuCacheEvictor(CACHE_SIZE));
+
+        for(int i = 0; i < (CACHE_SIZE / MEDIA_SIZE); i++) {
+            cache.request(("media-" + i), MEDIA_SIZE);
+        }
+
+        // touching the media that fit within the cache must neither evict nor resize anything
+        for(int i = 0; i < (CACHE_SIZE / MEDIA_SIZE); i++) {
+            assertTrue(cache.request(("media-" + i), MEDIA_SIZE));
+        }
+
+        assertEquals(CACHE_SIZE, cache.getCachedBytes());
+    }
+
+
+
+
+    private static int replayFeedTrace(CacheEvictor evictor) {
+        final TraceReplayCache cache = new TraceReplayCache(evictor);
+        final Random random = new Random(TRACE_SEED);
+        int oneShotMediaCount = 0;
+        int hitCount = 0;
+
+        for(int step = 0; step < STEP_COUNT; step++) {
+            // a re-watched media interleaved with the stream of the one-shot ones
+            if(cache.request(("popular-" + random.nextInt(POPULAR_MEDIA_COUNT)), MEDIA_SIZE)) {
+                hitCount++;
+            }
+
+            for(int i = 0; i < ONE_SHOT_MEDIA_PER_STEP; i++) {
+                if(cache.request(("one-shot-" + (oneShotMediaCount++)), MEDIA_SIZE)) {
+                    hitCount++;
+                }
+            }
+
+            assertTrue(cache.getCachedBytes() <= CACHE_SIZE);
+        }
+
+        return hitCount;
+    }
+
+
+
+
+    /**
+     * A minimal stand-in for the SimpleCache, which holds a single span per media
+     * and notifies the {@link CacheEvictor} the same way the SimpleCache does.
+     */
+    private static final class TraceReplayCache implements InvocationHandler {
+
+
+        private final CacheEvictor evictor;
+
+        private final Cache cache;
+
+        private final Map<String, CacheSpan> spanMap;
+
+        private long cachedBytes;
+
+        private long clock;
+
+
+
+
+        TraceReplayCache(CacheEvictor evictor) {
+            this.evictor = evictor;
+            this.cache = (Cache) Proxy.newProxyInstance(
+                Cache.class.getClassLoader(),
+                new Class<?>[] {Cache.class},
+                this
+            );
+            this.spanMap = new HashMap<>();
+            this.cachedBytes = 0L;
+            this.clock = 0L;
+        }
+
+
+
+
+        /**
+         * Requests the specified media, caching it if it's not cached yet.
+         *
+         * @return <strong>true</strong> if the media has been cached already, <strong>false</strong> otherwise
+         */
+        boolean request(String key, long length) {
+            final CacheSpan cachedSpan = this.spanMap.get(key);
+
+            if(cachedSpan != null) {
+                final CacheSpan touchedSpan = new CacheSpan(key, 0L, cachedSpan.length, (++this.clock), null);
+
+                this.spanMap.put(key, touchedSpan);
+                this.evictor.onSpanTouched(this.cache, cachedSpan, touchedSpan);
+
+                return true;
+            }
+
+            this.evictor.onStartFile(this.cache, key, 0L, length);
+
+            final CacheSpan span = new CacheSpan(key, 0L, length, (++this.clock), null);
+
+            this.spanMap.put(key, span);
+            this.cachedBytes += length;
+            this.evictor.onSpanAdded(this.cache, span);
+
+            return false;
+        }
+
+
+
+
+        long getCachedBytes() {
+            return this.cachedBytes;
+        }
+
+
+
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if(method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args);
+            }
+
+            if(!"removeSpan".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+
+            final CacheSpan span = (CacheSpan) args[0];
+
+            if(this.spanMap.get(span.key) == span) {
+                this.spanMap.remove(span.key);
+                this.cachedBytes -= span.length;
+                this.evictor.onSpanRemoved(this.cache, span);
+            }
+
+            return null;
+        }
+
+
+
+
+    }
+
+
+
+
+}
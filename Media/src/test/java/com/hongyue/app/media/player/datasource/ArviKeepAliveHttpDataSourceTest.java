@@ -0,0 +1,419 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.datasource;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Runs the {@link ArviKeepAliveHttpDataSource} against a minimal keep-alive HTTP server,
+ * which counts the accepted connections.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ArviKeepAliveHttpDataSourceTest {
+
+
+    private static final int CONTENT_LENGTH = (256 * 1024);
+
+    private static final String USER_AGENT = "ArviKeepAliveHttpDataSourceTest";
+
+    private static final byte[] CONTENT = createContent(CONTENT_LENGTH);
+
+    private KeepAliveServer server;
+
+
+
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new KeepAliveServer();
+    }
+
+
+
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+
+
+
+    @Test
+    public void reusesConnectionForSequentialRanges() throws IOException {
+        final ArviKeepAliveHttpDataSource dataSource = createDataSource(ArviKeepAliveHttpDataSource.DEFAULT_READ_BUFFER_SIZE);
+
+        for(int i = 0; i < 4; i++) {
+            assertArrayEquals(expectedContent((i * 1000), 1000), readFully(dataSource, (i * 1000), 1000));
+        }
+
+        assertEquals(1, this.server.getAcceptedConnectionCount());
+    }
+
+
+
+
+    @Test
+    public void drainsSmallRemainderOnClose() throws IOException {
+        final ArviKeepAliveHttpDataSource dataSource = createDataSource(ArviKeepAliveHttpDataSource.DEFAULT_READ_BUFFER_SIZE);
+
+        // leaving the remainder (well below the drain limit) unread
+        dataSource.open(createDataSpec(0, 20000));
+        read(dataSource, 1000);
+        dataSource.close();
+
+        assertArrayEquals(expectedContent(20000, 1000), readFully(dataSource, 20000, 1000));
+        assertEquals(1, this.server.getAcceptedConnectionCount());
+    }
+
+
+
+
+    @Test
+    public void dropsConnectionWithLargeRemainderOnClose() throws IOException {
+        final ArviKeepAliveHttpDataSource dataSource = createDataSource(ArviKeepAliveHttpDataSource.DEFAULT_READ_BUFFER_SIZE);
+
+        // leaving the remainder (well above the drain limit) unread
+        dataSource.open(createDataSpec(0, 200000));
+        read(dataSource, 1000);
+        dataSource.close();
+
+        assertArrayEquals(expectedContent(200000, 1000), readFully(dataSource, 200000, 1000));
+        assertEquals(2, this.server.getAcceptedConnectionCount());
+    }
+
+
+
+
+    @Test
+    public void readsAcrossReadBufferBoundaries() throws IOException {
+        final ArviKeepAliveHttpDataSource dataSource = createDataSource(7);
+        final byte[] data = new byte[100];
+        final byte[] buffer = new byte[13];
+        int offset = 0;
+        int readCount;
+
+        assertEquals(100, dataSource.open(createDataSpec(3, 100)));
+
+        // the read lengths that are both smaller and bigger than the read buffer
+        while((readCount = dataSource.read(buffer, 0, (1 + (offset % buffer.length)))) != C.RESULT_END_OF_INPUT) {
+            System.arraycopy(buffer, 0, data, offset, readCount);
+            offset += readCount;
+        }
+
+        assertEquals(C.RESULT_END_OF_INPUT, dataSource.read(buffer, 0, buffer.length));
+
+        dataSource.close();
+
+        assertEquals(100, offset);
+        assertArrayEquals(expectedContent(3, 100), data);
+    }
+
+
+
+
+    @Test
+    public void skipsToPositionIfRangeIsIgnored() throws IOException {
+        final ArviKeepAliveHttpDataSource dataSource = createDataSource(7);
+
+        this.server.setRangeIgnored(true);
+
+        assertArrayEquals(expectedContent(500, 100), readFully(dataSource, 500, 100));
+    }
+
+
+
+
+    private ArviKeepAliveHttpDataSource createDataSource(int readBufferSize) {
+        return new ArviKeepAliveHttpDataSource(
+            USER_AGENT,
+            null,
+            5000,
+            5000,
+            false,
+            null,
+            readBufferSize
+        );
+    }
+
+
+
+
+    private DataSpec createDataSpec(long position, long length) {
+        return new DataSpec(Uri.parse(this.server.getUrl()), position, length, null);
+    }
+
+
+
+
+    private byte[] readFully(ArviKeepAliveHttpDataSource dataSource, long position, int length) throws IOException {
+        assertEquals(length, dataSource.open(createDataSpec(position, length)));
+
+        final byte[] data = read(dataSource, length);
+
+        assertEquals(C.RESULT_END_OF_INPUT, dataSource.read(new byte[1], 0, 1));
+
+        dataSource.close();
+
+        return data;
+    }
+
+
+
+
+    private static byte[] read(ArviKeepAliveHttpDataSource dataSource, int length) throws IOException {
+        final byte[] data = new byte[length];
+        int offset = 0;
+        int readCount;
+
+        while(offset < length) {
+            readCount = dataSource.read(data, offset, (length - offset));
+            assertTrue((readCount > 0));
+            offset += readCount;
+        }
+
+        return data;
+    }
+
+
+
+
+    private static byte[] expectedContent(int position, int length) {
+        return Arrays.copyOfRange(CONTENT, position, (position + length));
+    }
+
+
+
+
+    private static byte[] createContent(int length) {
+        final byte[] content = new byte[length];
+
+        for(int i = 0; i < length; i++) {
+            content[i] = (byte) ((i * 31) % 251);
+        }
+
+        return content;
+    }
+
+
+
+
+    /**
+     * A minimal HTTP/1.1 server, which serves the {@link #CONTENT} (honoring the single byte ranges, unless ignored)
+     * and keeps the connections alive until the client closes them.
+     */
+    private static final class KeepAliveServer implements Runnable {
+
+
+        private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d+)-(\\d*)$");
+
+        // the bodies are sent in two parts, so that the remainders are not yet buffered by the client upon close
+        // (which would let the platform connection recycle them on its own)
+        private static final int FIRST_PART_LENGTH = 4096;
+        private static final long PART_DELAY_MILLIS = 100L;
+
+        private final ServerSocket serverSocket;
+
+        private final AtomicInteger acceptedConnectionCount;
+
+        private volatile boolean isRangeIgnored;
+
+
+
+
+        KeepAliveServer() throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            this.acceptedConnectionCount = new AtomicInteger();
+            this.isRangeIgnored = false;
+
+            startDaemon(this);
+        }
+
+
+
+
+        @Override
+        public void run() {
+            Socket socket;
+
+            try {
+                while((socket = this.serverSocket.accept()) != null) {
+                    this.acceptedConnectionCount.incrementAndGet();
+
+                    final Socket acceptedSocket = socket;
+
+                    startDaemon(() -> serve(acceptedSocket));
+                }
+            } catch(IOException exception) {
+                // the server has been closed
+            }
+        }
+
+
+
+
+        private void serve(Socket socket) {
+            try(Socket ignored = socket) {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                final OutputStream outputStream = socket.getOutputStream();
+                String requestLine;
+
+                // serving the requests one by one, until the client closes the connection
+                while(((requestLine = reader.readLine()) != null) && !requestLine.isEmpty()) {
+                    String range = null;
+                    String header;
+
+                    while(((header = reader.readLine()) != null) && !header.isEmpty()) {
+                        if(header.toLowerCase().startsWith("range:")) {
+                            range = header.substring("range:".length()).trim();
+                        }
+                    }
+
+                    respond(outputStream, range);
+                }
+            } catch(IOException exception) {
+                // the connection has been dropped by the client
+            }
+        }
+
+
+
+
+        private void respond(OutputStream outputStream, String range) throws IOException {
+            final Matcher matcher = ((range != null) ? RANGE_PATTERN.matcher(range) : null);
+            final StringBuilder headers = new StringBuilder();
+            int start = 0;
+            int end = (CONTENT_LENGTH - 1);
+
+            if(!this.isRangeIgnored && (matcher != null) && matcher.find()) {
+                start = Integer.parseInt(matcher.group(1));
+                end = (matcher.group(2).isEmpty() ? end : Math.min(end, Integer.parseInt(matcher.group(2))));
+
+                headers.append("HTTP/1.1 206 Partial Content\r\n");
+                headers.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(CONTENT_LENGTH).append("\r\n");
+            } else {
+                headers.append("HTTP/1.1 200 OK\r\n");
+            }
+
+            headers.append("Content-Type: video/mp4\r\n");
+            headers.append("Content-Length: ").append((end - start) + 1).append("\r\n");
+            headers.append("Connection: keep-alive\r\n");
+            headers.append("\r\n");
+
+            final int length = ((end - start) + 1);
+            final int firstPartLength = Math.min(length, FIRST_PART_LENGTH);
+
+            outputStream.write(headers.toString().getBytes(StandardCharsets.ISO_8859_1));
+            outputStream.write(CONTENT, start, firstPartLength);
+            outputStream.flush();
+
+            if(firstPartLength < length) {
+                sleep(PART_DELAY_MILLIS);
+
+                outputStream.write(CONTENT, (start + firstPartLength), (length - firstPartLength));
+                outputStream.flush();
+            }
+        }
+
+
+
+
+        void setRangeIgnored(boolean isRangeIgnored) {
+            this.isRangeIgnored = isRangeIgnored;
+        }
+
+
+
+
+        int getAcceptedConnectionCount() {
+            return this.acceptedConnectionCount.get();
+        }
+
+
+
+
+        String getUrl() {
+            return ("http://127.0.0.1:" + this.serverSocket.getLocalPort() + "/media.mp4");
+        }
+
+
+
+
+        void close() throws IOException {
+            this.serverSocket.close();
+        }
+
+
+
+
+        private static void sleep(long millis) throws IOException {
+            try {
+                Thread.sleep(millis);
+            } catch(InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+
+
+
+        private static void startDaemon(Runnable runnable) {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+
+
+
+    }
+
+
+
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 Arthur Ivanets, arthur.ivanets.l@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hongyue.app.media.player.util;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.hongyue.app.media.player.Player;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+
+/**
+ * Verifies the copy-on-write dispatch of the {@link PlayerEventListenerRegistry}.
+ */
+public class PlayerEventListenerRegistryTest {
+
+
+    private static final int WARM_UP_DISPATCH_COUNT = 20000;
+    private static final int MEASURED_DISPATCH_COUNT = 100000;
+
+    // leaves room for the allocations of the measurement itself
+    private static final long MAX_ALLOCATED_BYTES = 1024L;
+
+
+
+
+    @Test
+    public void removingListenersDuringDispatchKeepsTheSnapshot() {
+        final PlayerEventListenerRegistry registry = new PlayerEventListenerRegistry();
+        final CountingListener secondListener = new CountingListener();
+        final CountingListener thirdListener = new CountingListener();
+        final CountingListener firstListener = new CountingListener() {
+
+            @Override
+            public void onLoadingChanged(boolean isLoading) {
+                super.onLoadingChanged(isLoading);
+
+                // the listener removes both itself and the next one in the middle of the dispatch
+                registry.removeListener(this);
+                registry.removeListener(secondListener);
+            }
+
+        };
+
+        registry.addListener(firstListener);
+        registry.addListener(secondListener);
+        registry.addListener(thirdListener);
+
+        // the ongoing dispatch is delivered to the listeners registered at its start
+        registry.onLoadingChanged(true);
+
+        assertEquals(1, firstListener.loadingChangeCount);
+        assertEquals(1, secondListener.loadingChangeCount);
+        assertEquals(1, thirdListener.loadingChangeCount);
+
+        registry.onLoadingChanged(false);
+
+        assertEquals(1, firstListener.loadingChangeCount);
+        assertEquals(1, secondListener.loadingChangeCount);
+        assertEquals(2, thirdListener.loadingChangeCount);
+    }
+
+
+
+
+    @Test
+    public void addingListenersDuringDispatchTakesEffectOnTheNextOne() {
+        final PlayerEventListenerRegistry registry = new PlayerEventListenerRegistry();
+        final CountingListener addedListener = new CountingListener();
+        final CountingListener addingListener = new CountingListener() {
+
+            @Override
+            public void onLoadingChanged(boolean isLoading) {
+                super.onLoadingChanged(isLoading);
+                registry.addListener(addedListener);
+            }
+
+        };
+
+        registry.addListener(addingListener);
+        registry.onLoadingChanged(true);
+
+        assertEquals(1, addingListener.loadingChangeCount);
+        assertEquals(0, addedListener.loadingChangeCount);
+
+        registry.onLoadingChanged(false);
+
+        assertEquals(2, addingListener.loadingChangeCount);
+        assertEquals(1, addedListener.loadingChangeCount);
+    }
+
+
+
+
+    @Test
+    public void ignoresDuplicateListeners() {
+        final PlayerEventListenerRegistry registry = new PlayerEventListenerRegistry();
+        final CountingListener listener = new CountingListener();
+
+        registry.addListener(listener);
+        registry.addListener(listener);
+        registry.onLoadingChanged(true);
+
+        assertEquals(1, listener.loadingChangeCount);
+
+        registry.removeListener(listener);
+        registry.onLoadingChanged(false);
+
+        assertEquals(1, listener.loadingChangeCount);
+    }
+
+
+
+
+    @Test
+    public void dispatchesWithoutAllocations() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        // the per-thread allocation counter is a HotSpot extension
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        final PlayerEventListenerRegistry registry = new PlayerEventListenerRegistry();
+        final CountingListener listener = new CountingListener();
+
+        for(int i = 0; i < 4; i++) {
+            registry.addListener(new CountingListener());
+        }
+
+        registry.addListener(listener);
+
+        for(int i = 0; i < WARM_UP_DISPATCH_COUNT; i++) {
+            registry.onLoadingChanged((i % 2) == 0);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBytesBefore = allocationBean.getThreadAllocatedBytes(threadId);
+
+        for(int i = 0; i < MEASURED_DISPATCH_COUNT; i++) {
+            registry.onLoadingChanged((i % 2) == 0);
+        }
+
+        final long allocatedBytes = (allocationBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore);
+
+        assertEquals((WARM_UP_DISPATCH_COUNT + MEASURED_DISPATCH_COUNT), listener.loadingChangeCount);
+        assertTrue(("Allocated bytes: " + allocatedBytes), (allocatedBytes < MAX_ALLOCATED_BYTES));
+    }
+
+
+
+
+    private static class CountingListener implements Player.EventListener {
+
+
+        int loadingChangeCount;
+
+
+
+
+        @Override
+        public void onPlayerStateChanged(int playbackState) {
+            // do nothing.
+        }
+
+
+
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+            this.loadingChangeCount++;
+        }
+
+
+
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+            // do nothing.
+        }
+
+
+
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+            // do nothing.
+        }
+
+
+
+
+    }
+
+
+
+
+}